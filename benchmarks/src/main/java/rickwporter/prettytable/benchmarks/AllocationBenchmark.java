@@ -0,0 +1,109 @@
+package rickwporter.prettytable.benchmarks;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import rickwporter.prettytable.PrettyTable;
+import rickwporter.prettytable.PrettyTable.OutputFormat;
+
+/**
+ * Bytes allocated per row rendered, with the output discarded so only the render itself is counted. Run with
+ * -prof gc to see the allocation (gc.alloc.rate.norm is per render, so divide it by the rows), and an iteration
+ * allocating more than maxBytesPerRow fails the run.
+ * The target allows for the cell text of the non-string cells (which is converted on every render) plus a
+ * little overhead, so a renderer that starts allocating per row or per cell again goes over it. CSV is left
+ * out, since the records are written by commons-csv.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class AllocationBenchmark {
+    @Param({"10000"})
+    private int rows;
+
+    @Param({"8"})
+    private int columns;
+
+    @Param({"12"})
+    private int cellLength;
+
+    @Param({"TEXT", "JSON", "HTML"})
+    private OutputFormat format;
+
+    @Param({"true", "false"})
+    private boolean removeRedundant;
+
+    private PrettyTable table;
+
+    @Setup
+    public void setup() {
+        this.table = BenchmarkTables.create(this.rows, this.columns, this.cellLength, false, 0);
+    }
+
+    @Benchmark
+    public void writeTo(Allocation allocation) throws IOException {
+        long before = Allocation.allocated();
+        this.table.writeTo(RenderBenchmark.NullWriter.INSTANCE, this.format, this.removeRedundant);
+        allocation.add(Allocation.allocated() - before, this.rows);
+    }
+
+    /**
+     * Allocation of the benchmark thread over an iteration, measured around each render.
+     */
+    @State(Scope.Thread)
+    public static class Allocation {
+        private static final com.sun.management.ThreadMXBean THREADS =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+        @Param({"320"})
+        private long maxBytesPerRow;
+
+        private long bytes;
+        private long rows;
+
+        static long allocated() {
+            return THREADS.getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            this.bytes = 0;
+            this.rows = 0;
+        }
+
+        @TearDown(Level.Iteration)
+        public void check() {
+            if (this.bytesPerRow() > this.maxBytesPerRow) {
+                throw new IllegalStateException(String.format("Render allocated %.1f bytes per row, over %d",
+                    this.bytesPerRow(), this.maxBytesPerRow));
+            }
+        }
+
+        void add(long allocatedBytes, int rendered) {
+            this.bytes += allocatedBytes;
+            this.rows += rendered;
+        }
+
+        double bytesPerRow() {
+            return this.rows == 0 ? 0 : (double) this.bytes / this.rows;
+        }
+    }
+}
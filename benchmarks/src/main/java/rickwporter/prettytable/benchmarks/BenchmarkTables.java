@@ -0,0 +1,60 @@
+package rickwporter.prettytable.benchmarks;
+
+import java.util.Random;
+
+import rickwporter.prettytable.PrettyTable;
+
+/**
+ * Generates repeatable tables for the benchmarks.
+ */
+final class BenchmarkTables {
+    private static final String ALPHABET = "abcdefghijklmnopqrstuvwxyzABCDEFGHIJKLMNOPQRSTUVWXYZ0123456789 ";
+    // mixes in double-width (CJK) and zero-width (combining) characters
+    private static final String WIDE_ALPHABET = "abcdefghij0123456789 \u65e5\u672c\u8a9e\u8868\u5e45\ud55c\uae00e\u0301";
+    private static final int NESTED_SIZE = 3;
+    private static final int GROUP_SIZE = 4;
+
+    private BenchmarkTables() {
+    }
+
+    static PrettyTable create(int rows, int columns, int cellLength, boolean multiLine, int nesting) {
+        return create(rows, columns, cellLength, multiLine, nesting, false);
+    }
+
+    static PrettyTable create(int rows, int columns, int cellLength, boolean multiLine, int nesting, boolean wide) {
+        Random random = new Random(rows * 31L + columns);
+        String[] headers = new String[columns];
+        for (int cIdx = 0; cIdx < columns; cIdx++) {
+            headers[cIdx] = "Column " + cIdx;
+        }
+        PrettyTable table = new PrettyTable(headers);
+        for (int rIdx = 0; rIdx < rows; rIdx++) {
+            Object[] row = new Object[columns];
+            for (int cIdx = 0; cIdx < columns; cIdx++) {
+                if (cIdx == 0) {
+                    // leading column repeats in groups, so removing redundant entries has something to do
+                    row[cIdx] = "group-" + (rIdx / GROUP_SIZE);
+                } else if (cIdx == 1 && nesting > 0) {
+                    row[cIdx] = create(NESTED_SIZE, NESTED_SIZE, cellLength, multiLine, nesting - 1, wide);
+                } else if (cIdx % 2 == 0) {
+                    row[cIdx] = random.nextInt(1_000_000);
+                } else {
+                    row[cIdx] = text(random, wide ? WIDE_ALPHABET : ALPHABET, cellLength, multiLine);
+                }
+            }
+            table.addRow(row);
+        }
+        return table;
+    }
+
+    private static String text(Random random, String alphabet, int length, boolean multiLine) {
+        StringBuilder result = new StringBuilder(length + 1);
+        for (int idx = 0; idx < length; idx++) {
+            result.append(alphabet.charAt(random.nextInt(alphabet.length())));
+        }
+        if (multiLine && length > 1) {
+            result.insert(length / 2, '\n');
+        }
+        return result.toString();
+    }
+}
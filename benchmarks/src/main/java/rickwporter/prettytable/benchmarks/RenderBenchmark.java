@@ -0,0 +1,107 @@
+package rickwporter.prettytable.benchmarks;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import rickwporter.prettytable.PrettyTable;
+import rickwporter.prettytable.PrettyTable.OutputFormat;
+
+/**
+ * Full renders in each output format, with and without removing redundant entries.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class RenderBenchmark {
+    @Param({"100", "10000"})
+    private int rows;
+
+    @Param({"8"})
+    private int columns;
+
+    @Param({"12"})
+    private int cellLength;
+
+    @Param({"false"})
+    private boolean multiLine;
+
+    @Param({"0"})
+    private int nesting;
+
+    @Param({"TEXT", "CSV", "JSON", "HTML"})
+    private OutputFormat format;
+
+    @Param({"true", "false"})
+    private boolean removeRedundant;
+
+    // ASCII-only cells, or cells with double-width and combining characters
+    @Param({"false", "true"})
+    private boolean wide;
+
+    private PrettyTable table;
+
+    @Setup
+    public void setup() {
+        this.table = BenchmarkTables.create(this.rows, this.columns, this.cellLength, this.multiLine, this.nesting,
+            this.wide);
+    }
+
+    @Benchmark
+    public String formattedString() {
+        return this.table.formattedString(this.format, this.removeRedundant);
+    }
+
+    @Benchmark
+    public void writeTo() throws IOException {
+        this.table.writeTo(NullWriter.INSTANCE, this.format, this.removeRedundant);
+    }
+
+    /**
+     * Discards everything, so only the rendering is measured.
+     */
+    static final class NullWriter extends Writer {
+        static final NullWriter INSTANCE = new NullWriter();
+
+        @Override
+        public void write(char[] cbuf, int off, int len) {
+        }
+
+        @Override
+        public void write(String str, int off, int len) {
+        }
+
+        @Override
+        public Writer append(CharSequence csq) {
+            return this;
+        }
+
+        @Override
+        public Writer append(char c) {
+            return this;
+        }
+
+        @Override
+        public void flush() {
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
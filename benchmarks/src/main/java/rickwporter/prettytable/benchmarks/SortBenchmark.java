@@ -0,0 +1,82 @@
+package rickwporter.prettytable.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import rickwporter.prettytable.PrettyTable;
+
+/**
+ * Sorting by text and numeric columns. The original row order is restored before each invocation, since
+ * sorting is done in place.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SortBenchmark {
+    @Param({"1000", "100000"})
+    private int rows;
+
+    @Param({"8"})
+    private int columns;
+
+    @Param({"12"})
+    private int cellLength;
+
+    @Param({"false"})
+    private boolean multiLine;
+
+    @Param({"1"})
+    private int parallelism;
+
+    private PrettyTable table;
+    private List<List<Object>> original;
+
+    @Setup
+    public void setup() {
+        this.table = BenchmarkTables.create(this.rows, this.columns, this.cellLength, this.multiLine, 0);
+        this.table.setParallelism(this.parallelism);
+        this.original = new ArrayList<>(this.table.getRows());
+    }
+
+    @Setup(Level.Invocation)
+    public void restoreOrder() {
+        List<List<Object>> current = this.table.getRows();
+        current.clear();
+        current.addAll(this.original);
+    }
+
+    @Benchmark
+    public PrettyTable sortByHeaderText() {
+        this.table.sortByHeader("Column 1");
+        return this.table;
+    }
+
+    @Benchmark
+    public PrettyTable sortByHeaderNumeric() {
+        this.table.sortByHeader("Column 2");
+        return this.table;
+    }
+
+    @Benchmark
+    public PrettyTable sortByIndexMultiple() {
+        this.table.sortByIndex(0, 2, 1);
+        return this.table;
+    }
+}
@@ -0,0 +1,72 @@
+package rickwporter.prettytable.benchmarks;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import rickwporter.prettytable.PrettyTable;
+
+/**
+ * Column width computation, both from the maintained width index and from a full rescan.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class WidthBenchmark {
+    @Param({"100", "10000"})
+    private int rows;
+
+    @Param({"8"})
+    private int columns;
+
+    @Param({"12"})
+    private int cellLength;
+
+    @Param({"false", "true"})
+    private boolean multiLine;
+
+    @Param({"0", "1"})
+    private int nesting;
+
+    @Param({"1"})
+    private int parallelism;
+
+    // ASCII-only cells, or cells with double-width and combining characters
+    @Param({"false", "true"})
+    private boolean wide;
+
+    private PrettyTable table;
+
+    @Setup
+    public void setup() {
+        this.table = BenchmarkTables.create(this.rows, this.columns, this.cellLength, this.multiLine, this.nesting,
+            this.wide);
+        this.table.setParallelism(this.parallelism);
+    }
+
+    @Benchmark
+    public List<Integer> getMaxWidths() {
+        return this.table.getMaxWidths();
+    }
+
+    @Benchmark
+    public List<Integer> getMaxWidthsRescan() {
+        // setting the cell width limit invalidates the width index, so this measures a full scan
+        this.table.setMaxCellWidth(this.table.getMaxCellWidth());
+        return this.table.getMaxWidths();
+    }
+}
@@ -0,0 +1,10 @@
+package rickwporter.prettytable;
+
+/**
+ * What is done with the text of a cell that is wider than its column: cut short with an ellipsis, or
+ * wrapped onto as many lines as it takes.
+ */
+public enum CellOverflow {
+    TRUNCATE,
+    WRAP,
+}
@@ -0,0 +1,213 @@
+package rickwporter.prettytable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Max display width of the row cells in each column, maintained as rows are added. Nested tables are
+ * mutable, so they are only collected here and measured when their width is asked for.
+ */
+final class ColumnWidths {
+    private int[] widths = new int[0];
+    private List<List<PrettyTable>> nested = new ArrayList<>();
+    private boolean valid = true;
+    // cells are only measured up to this width (when set), so a huge cell is not scanned to its end
+    private int cap = 0;
+
+    boolean isValid() {
+        return this.valid;
+    }
+
+    void invalidate() {
+        this.valid = false;
+    }
+
+    void setCap(int maxWidth) {
+        this.cap = maxWidth;
+        this.invalidate();
+    }
+
+    private int measure(Object cell) {
+        return this.measure(PrettyTable.getCellText(cell));
+    }
+
+    private int measure(String text) {
+        return this.cap > 0 ? PrettyTable.getTextWidth(text, this.cap) : PrettyTable.getTextWidth(text);
+    }
+
+    int size() {
+        return this.widths.length;
+    }
+
+    int getWidth(int column) {
+        return column < this.widths.length ? this.widths[column] : 0;
+    }
+
+    int nestedColumns() {
+        return this.nested.size();
+    }
+
+    List<PrettyTable> getNested(int column) {
+        return column < this.nested.size() ? this.nested.get(column) : Collections.<PrettyTable>emptyList();
+    }
+
+    void add(List<Object> row) {
+        if (row.size() > this.widths.length) {
+            this.widths = Arrays.copyOf(this.widths, row.size());
+        }
+        for (int cIdx = 0; cIdx < row.size(); cIdx++) {
+            Object cell = row.get(cIdx);
+            if (cell instanceof PrettyTable) {
+                while (this.nested.size() <= cIdx) {
+                    this.nested.add(new ArrayList<>());
+                }
+                this.nested.get(cIdx).add((PrettyTable) cell);
+                continue;
+            }
+            int cellWidth = this.measure(cell);
+            if (cellWidth > this.widths[cIdx]) {
+                this.widths[cIdx] = cellWidth;
+            }
+        }
+    }
+
+    boolean mayBeWidest(List<Object> row) {
+        // when a replaced cell may have been the widest, the column needs to be rescanned
+        for (int cIdx = 0; cIdx < row.size(); cIdx++) {
+            Object cell = row.get(cIdx);
+            if (cell instanceof PrettyTable || this.measure(cell) >= this.getWidth(cIdx)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    void replace(int column, int oldCellWidth, int newCellWidth) {
+        if (!this.valid) {
+            return;
+        }
+        // the widths index is capped the same way as the cells it measured itself
+        int oldWidth = this.cap > 0 ? Math.min(oldCellWidth, this.cap) : oldCellWidth;
+        int newWidth = this.cap > 0 ? Math.min(newCellWidth, this.cap) : newCellWidth;
+        if (oldWidth >= this.getWidth(column) && newWidth < oldWidth) {
+            // the replaced cell may have been the only one this wide
+            this.invalidate();
+            return;
+        }
+        if (column >= this.widths.length) {
+            this.widths = Arrays.copyOf(this.widths, column + 1);
+        }
+        this.widths[column] = Math.max(this.widths[column], newWidth);
+    }
+
+    void rebuild(List<List<Object>> rows, ForkJoinPool pool) {
+        ColumnWidths result;
+        if (pool == null || rows.size() < PrettyTable.PARALLEL_THRESHOLD) {
+            result = scan(rows, 0, rows.size(), this.cap);
+        } else {
+            int grain = PrettyTable.getParallelGrain(rows.size(), pool);
+            result = pool.invoke(new ScanTask(rows, 0, rows.size(), grain, this.cap));
+        }
+        this.widths = result.widths;
+        this.nested = result.nested;
+        this.valid = true;
+    }
+
+    private static ColumnWidths scan(List<List<Object>> rows, int from, int to, int maxWidth) {
+        ColumnWidths result = new ColumnWidths();
+        result.cap = maxWidth;
+        if (rows instanceof ColumnarRows) {
+            result.scanColumns((ColumnarRows) rows, from, to);
+            return result;
+        }
+        for (int rIdx = from; rIdx < to; rIdx++) {
+            result.add(rows.get(rIdx));
+        }
+        return result;
+    }
+
+    private void scanColumns(ColumnarRows rows, int from, int to) {
+        // typed columns are measured from their text, without boxing the cells
+        int columns = rows.getColumnCount();
+        this.widths = new int[columns];
+        for (int cIdx = 0; cIdx < columns; cIdx++) {
+            if (rows.getColumnType(cIdx) != PrettyTable.ColumnType.OBJECT) {
+                int maxWidth = 0;
+                for (int rIdx = from; rIdx < to; rIdx++) {
+                    maxWidth = Math.max(maxWidth, this.measure(rows.getText(rIdx, cIdx)));
+                }
+                this.widths[cIdx] = maxWidth;
+                continue;
+            }
+            List<PrettyTable> columnNested = new ArrayList<>();
+            for (int rIdx = from; rIdx < to; rIdx++) {
+                Object cell = rows.getCell(rIdx, cIdx);
+                if (cell instanceof PrettyTable) {
+                    columnNested.add((PrettyTable) cell);
+                } else {
+                    this.widths[cIdx] = Math.max(this.widths[cIdx], this.measure(cell));
+                }
+            }
+            if (!columnNested.isEmpty()) {
+                while (this.nested.size() <= cIdx) {
+                    this.nested.add(new ArrayList<>());
+                }
+                this.nested.get(cIdx).addAll(columnNested);
+            }
+        }
+    }
+
+    private void merge(ColumnWidths later) {
+        // the nested tables of the later rows go after the ones from this range, to keep the row order
+        if (later.widths.length > this.widths.length) {
+            this.widths = Arrays.copyOf(this.widths, later.widths.length);
+        }
+        for (int cIdx = 0; cIdx < later.widths.length; cIdx++) {
+            this.widths[cIdx] = Math.max(this.widths[cIdx], later.widths[cIdx]);
+        }
+        for (int cIdx = 0; cIdx < later.nested.size(); cIdx++) {
+            while (this.nested.size() <= cIdx) {
+                this.nested.add(new ArrayList<>());
+            }
+            this.nested.get(cIdx).addAll(later.nested.get(cIdx));
+        }
+    }
+
+    /**
+     * Splits the rows in halves until they are small enough to scan, then merges the results.
+     */
+    private static final class ScanTask extends RecursiveTask<ColumnWidths> {
+        private static final long serialVersionUID = 1L;
+
+        private final transient List<List<Object>> rows;
+        private final int from;
+        private final int to;
+        private final int grain;
+        private final int cap;
+
+        ScanTask(List<List<Object>> rowList, int start, int end, int perTask, int maxWidth) {
+            this.rows = rowList;
+            this.from = start;
+            this.to = end;
+            this.grain = perTask;
+            this.cap = maxWidth;
+        }
+
+        @Override
+        protected ColumnWidths compute() {
+            if (this.to - this.from <= this.grain) {
+                return scan(this.rows, this.from, this.to, this.cap);
+            }
+            int mid = (this.from + this.to) >>> 1;
+            ScanTask right = new ScanTask(this.rows, mid, this.to, this.grain, this.cap);
+            right.fork();
+            ColumnWidths result = new ScanTask(this.rows, this.from, mid, this.grain, this.cap).compute();
+            result.merge(right.join());
+            return result;
+        }
+    }
+}
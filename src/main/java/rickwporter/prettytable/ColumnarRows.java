@@ -0,0 +1,678 @@
+package rickwporter.prettytable;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import rickwporter.prettytable.PrettyTable.ColumnType;
+
+/**
+ * Row storage that keeps each column in its own typed array, so numeric cells are held as primitives and
+ * repeated strings are stored once. The rows themselves are views, which box the cells as they are read.
+ */
+final class ColumnarRows extends AbstractList<List<Object>> implements ReorderableRows {
+    private static final int INITIAL_CAPACITY = 16;
+    private static final int RADIX = 10;
+
+    private final ColumnType[] types;
+    private final Column[] columns;
+    private int size = 0;
+    private int capacity = INITIAL_CAPACITY;
+
+    ColumnarRows(ColumnType... columnTypes) {
+        this.types = columnTypes.clone();
+        this.columns = new Column[columnTypes.length];
+        for (int cIdx = 0; cIdx < columnTypes.length; cIdx++) {
+            this.columns[cIdx] = newColumn(columnTypes[cIdx], this.capacity);
+        }
+    }
+
+    private static Column newColumn(ColumnType type, int capacity) {
+        switch (type) {
+        case INT:
+            return new IntColumn(capacity);
+        case LONG:
+            return new LongColumn(capacity);
+        case DOUBLE:
+            return new DoubleColumn(capacity);
+        case STRING:
+            return new StringColumn(capacity);
+        default:
+            return new ObjectColumn(capacity);
+        }
+    }
+
+    List<ColumnType> getColumnTypes() {
+        return Arrays.asList(this.types);
+    }
+
+    ColumnType getColumnType(int column) {
+        return this.types[column];
+    }
+
+    int getColumnCount() {
+        return this.columns.length;
+    }
+
+    boolean isNumeric(int column) {
+        ColumnType type = this.types[column];
+        return type == ColumnType.INT || type == ColumnType.LONG || type == ColumnType.DOUBLE;
+    }
+
+    boolean hasNulls(int column) {
+        return !this.columns[column].nulls.isEmpty();
+    }
+
+    boolean isNull(int row, int column) {
+        return this.columns[column].nulls.get(row);
+    }
+
+    String getText(int row, int column) {
+        Column col = this.columns[column];
+        return col.nulls.get(row) ? "" : col.getText(row);
+    }
+
+    int getTextWidth(int row, int column) {
+        // only numeric columns are measured this way, since their text is known to be ASCII
+        Column col = this.columns[column];
+        return col.nulls.get(row) ? 0 : ((NumberColumn) col).getTextWidth(row);
+    }
+
+    double getDouble(int row, int column) {
+        // only numeric columns have a double value, see isNumeric()
+        return ((NumberColumn) this.columns[column]).getDouble(row);
+    }
+
+    Object getCell(int row, int column) {
+        Column col = this.columns[column];
+        return col.nulls.get(row) ? null : col.get(row);
+    }
+
+    Object setCell(int row, int column, Object value) {
+        checkRow(row);
+        Object old = this.getCell(row, column);
+        this.columns[column].setValue(row, value, column);
+        return old;
+    }
+
+    void setInt(int row, int column, int value) {
+        checkRow(row);
+        this.columns[column].setInt(row, value, column);
+    }
+
+    void setLong(int row, int column, long value) {
+        checkRow(row);
+        this.columns[column].setLong(row, value, column);
+    }
+
+    void setDouble(int row, int column, double value) {
+        checkRow(row);
+        this.columns[column].setDouble(row, value, column);
+    }
+
+    int addRows(int count) {
+        // empty rows, all in one step, for the cells to be set without boxing them
+        int first = this.size;
+        this.ensureCapacity(this.size + count);
+        for (Column col : this.columns) {
+            col.nulls.set(first, first + count);
+        }
+        this.size += count;
+        this.modCount++;
+        return first;
+    }
+
+    private void checkRow(int row) {
+        if (row < 0 || row >= this.size) {
+            throw new IndexOutOfBoundsException("Row " + row + " of " + this.size);
+        }
+    }
+
+    private void checkCells(List<Object> values) {
+        if (values.size() > this.columns.length) {
+            throw new IllegalArgumentException(
+                "Row has " + values.size() + " cells, but the table has " + this.columns.length + " columns");
+        }
+    }
+
+    private void ensureCapacity(int needed) {
+        if (needed <= this.capacity) {
+            return;
+        }
+        this.capacity = Math.max(needed, this.capacity + (this.capacity >> 1));
+        for (Column col : this.columns) {
+            col.resize(this.capacity);
+        }
+    }
+
+    @Override
+    public void reorder(int[] order) {
+        for (Column col : this.columns) {
+            col.reorder(order, this.size);
+        }
+    }
+
+    @Override
+    public int size() {
+        return this.size;
+    }
+
+    @Override
+    public List<Object> get(int row) {
+        checkRow(row);
+        return new RowView(row);
+    }
+
+    @Override
+    public List<Object> set(int row, List<Object> values) {
+        checkRow(row);
+        checkCells(values);
+        List<Object> old = Arrays.asList(new RowView(row).toArray());
+        try {
+            this.write(row, values);
+        } catch (IllegalArgumentException ex) {
+            this.write(row, old);
+            throw ex;
+        }
+        return old;
+    }
+
+    @Override
+    public void add(int row, List<Object> values) {
+        if (row < 0 || row > this.size) {
+            throw new IndexOutOfBoundsException("Row " + row + " of " + this.size);
+        }
+        checkCells(values);
+        this.ensureCapacity(this.size + 1);
+        for (Column col : this.columns) {
+            col.move(row, row + 1, this.size - row);
+        }
+        this.size++;
+        this.modCount++;
+        try {
+            this.write(row, values);
+        } catch (IllegalArgumentException ex) {
+            // a cell of the wrong type leaves the rows as they were
+            this.removeRange(row, row + 1);
+            throw ex;
+        }
+    }
+
+    @Override
+    public List<Object> remove(int row) {
+        checkRow(row);
+        List<Object> old = Arrays.asList(new RowView(row).toArray());
+        this.removeRange(row, row + 1);
+        return old;
+    }
+
+    @Override
+    protected void removeRange(int fromIndex, int toIndex) {
+        int newSize = this.size - (toIndex - fromIndex);
+        for (Column col : this.columns) {
+            col.move(toIndex, fromIndex, this.size - toIndex);
+            col.nulls.clear(newSize, this.size);
+            // the slots past the end no longer hold on to the removed cells
+            col.release(newSize, this.size);
+        }
+        this.size -= toIndex - fromIndex;
+        this.modCount++;
+    }
+
+    private void write(int row, List<Object> values) {
+        for (int cIdx = 0; cIdx < this.columns.length; cIdx++) {
+            this.columns[cIdx].setValue(row, cIdx < values.size() ? values.get(cIdx) : null, cIdx);
+        }
+    }
+
+    /**
+     * Live view of a single row.
+     */
+    private final class RowView extends AbstractList<Object> {
+        private final int row;
+
+        RowView(int rowIndex) {
+            this.row = rowIndex;
+        }
+
+        @Override
+        public int size() {
+            return ColumnarRows.this.columns.length;
+        }
+
+        @Override
+        public Object get(int column) {
+            return ColumnarRows.this.getCell(this.row, column);
+        }
+
+        @Override
+        public Object set(int column, Object value) {
+            return ColumnarRows.this.setCell(this.row, column, value);
+        }
+    }
+
+    /**
+     * Storage for a single column, where nulls are tracked separately from the values.
+     */
+    private abstract static class Column {
+        private final BitSet nulls = new BitSet();
+
+        abstract Object get(int row);
+
+        abstract String getText(int row);
+
+        abstract void set(int row, Object value, int column);
+
+        abstract void resize(int capacity);
+
+        abstract void move(int from, int to, int length);
+
+        abstract void reorder(int[] order, int count);
+
+        void release(int from, int to) {
+            // only columns holding references have anything to let go of
+        }
+
+        void setValue(int row, Object value, int column) {
+            if (value != null) {
+                this.set(row, value, column);
+            }
+            this.nulls.set(row, value == null);
+        }
+
+        void setInt(int row, int value, int column) {
+            this.setValue(row, value, column);
+        }
+
+        void setLong(int row, long value, int column) {
+            this.setValue(row, value, column);
+        }
+
+        void setDouble(int row, double value, int column) {
+            this.setValue(row, value, column);
+        }
+
+        void clearNull(int row) {
+            this.nulls.clear(row);
+        }
+
+        void moveNulls(int from, int to, int length) {
+            BitSet moved = this.nulls.get(from, from + length);
+            this.nulls.clear(to, to + length);
+            for (int idx = moved.nextSetBit(0); idx >= 0; idx = moved.nextSetBit(idx + 1)) {
+                this.nulls.set(to + idx);
+            }
+        }
+
+        void reorderNulls(int[] order, int count) {
+            if (this.nulls.isEmpty()) {
+                return;
+            }
+            BitSet old = (BitSet) this.nulls.clone();
+            for (int idx = 0; idx < count; idx++) {
+                this.nulls.set(idx, old.get(order[idx]));
+            }
+        }
+
+        static Number toNumber(Object value, int column, ColumnType type) {
+            if (!(value instanceof Number)) {
+                throw new IllegalArgumentException(
+                    "Column " + column + " holds " + type + " values, not " + value.getClass().getSimpleName());
+            }
+            return (Number) value;
+        }
+
+        static long toWholeNumber(Object value, int column, ColumnType type, long min, long max) {
+            // whole numbers that fit are stored as they are, anything else would lose part of the value
+            Number number = toNumber(value, column, type);
+            boolean fits = true;
+            if (number instanceof BigInteger) {
+                fits = ((BigInteger) number).bitLength() < Long.SIZE;
+            } else if (number instanceof BigDecimal) {
+                try {
+                    ((BigDecimal) number).longValueExact();
+                } catch (ArithmeticException e) {
+                    fits = false;
+                }
+            } else if (!(number instanceof Integer || number instanceof Long || number instanceof Short
+                    || number instanceof Byte)) {
+                // NaN is never equal to itself, and -min is just past the largest value that fits
+                double real = number.doubleValue();
+                fits = real == Math.rint(real) && real >= min && real < -(double) min;
+            }
+            long whole = number.longValue();
+            if (!fits || whole < min || whole > max) {
+                throw new IllegalArgumentException(
+                    "Column " + column + " holds " + type + " values, which " + number + " does not fit");
+            }
+            return whole;
+        }
+    }
+
+    /**
+     * Storage for a column of numbers, which the sorter reads as doubles without boxing them.
+     */
+    private abstract static class NumberColumn extends Column {
+        abstract double getDouble(int row);
+
+        abstract int getTextWidth(int row);
+
+        static int textLength(long value) {
+            // length of Long.toString(value), without building the string
+            int length = value < 0 ? 2 : 1;
+            for (long rest = value; rest <= -RADIX || rest >= RADIX; rest /= RADIX) {
+                length++;
+            }
+            return length;
+        }
+    }
+
+    private static final class IntColumn extends NumberColumn {
+        private int[] values;
+
+        IntColumn(int capacity) {
+            this.values = new int[capacity];
+        }
+
+        @Override
+        Object get(int row) {
+            return this.values[row];
+        }
+
+        @Override
+        String getText(int row) {
+            return Integer.toString(this.values[row]);
+        }
+
+        @Override
+        int getTextWidth(int row) {
+            return textLength(this.values[row]);
+        }
+
+        @Override
+        double getDouble(int row) {
+            return this.values[row];
+        }
+
+        @Override
+        void set(int row, Object value, int column) {
+            this.values[row] = (int) toWholeNumber(value, column, ColumnType.INT, Integer.MIN_VALUE, Integer.MAX_VALUE);
+        }
+
+        @Override
+        void setInt(int row, int value, int column) {
+            this.values[row] = value;
+            this.clearNull(row);
+        }
+
+        @Override
+        void resize(int capacity) {
+            this.values = Arrays.copyOf(this.values, capacity);
+        }
+
+        @Override
+        void move(int from, int to, int length) {
+            System.arraycopy(this.values, from, this.values, to, length);
+            moveNulls(from, to, length);
+        }
+
+        @Override
+        void reorder(int[] order, int count) {
+            int[] old = this.values.clone();
+            for (int idx = 0; idx < count; idx++) {
+                this.values[idx] = old[order[idx]];
+            }
+            reorderNulls(order, count);
+        }
+    }
+
+    private static final class LongColumn extends NumberColumn {
+        private long[] values;
+
+        LongColumn(int capacity) {
+            this.values = new long[capacity];
+        }
+
+        @Override
+        Object get(int row) {
+            return this.values[row];
+        }
+
+        @Override
+        String getText(int row) {
+            return Long.toString(this.values[row]);
+        }
+
+        @Override
+        int getTextWidth(int row) {
+            return textLength(this.values[row]);
+        }
+
+        @Override
+        double getDouble(int row) {
+            return this.values[row];
+        }
+
+        @Override
+        void set(int row, Object value, int column) {
+            this.values[row] = toWholeNumber(value, column, ColumnType.LONG, Long.MIN_VALUE, Long.MAX_VALUE);
+        }
+
+        @Override
+        void setInt(int row, int value, int column) {
+            this.setLong(row, value, column);
+        }
+
+        @Override
+        void setLong(int row, long value, int column) {
+            this.values[row] = value;
+            this.clearNull(row);
+        }
+
+        @Override
+        void resize(int capacity) {
+            this.values = Arrays.copyOf(this.values, capacity);
+        }
+
+        @Override
+        void move(int from, int to, int length) {
+            System.arraycopy(this.values, from, this.values, to, length);
+            moveNulls(from, to, length);
+        }
+
+        @Override
+        void reorder(int[] order, int count) {
+            long[] old = this.values.clone();
+            for (int idx = 0; idx < count; idx++) {
+                this.values[idx] = old[order[idx]];
+            }
+            reorderNulls(order, count);
+        }
+    }
+
+    private static final class DoubleColumn extends NumberColumn {
+        private double[] values;
+
+        DoubleColumn(int capacity) {
+            this.values = new double[capacity];
+        }
+
+        @Override
+        Object get(int row) {
+            return this.values[row];
+        }
+
+        @Override
+        String getText(int row) {
+            return Double.toString(this.values[row]);
+        }
+
+        @Override
+        int getTextWidth(int row) {
+            return Double.toString(this.values[row]).length();
+        }
+
+        @Override
+        double getDouble(int row) {
+            return this.values[row];
+        }
+
+        @Override
+        void set(int row, Object value, int column) {
+            this.values[row] = toNumber(value, column, ColumnType.DOUBLE).doubleValue();
+        }
+
+        @Override
+        void setInt(int row, int value, int column) {
+            this.setDouble(row, value, column);
+        }
+
+        @Override
+        void setLong(int row, long value, int column) {
+            this.setDouble(row, value, column);
+        }
+
+        @Override
+        void setDouble(int row, double value, int column) {
+            this.values[row] = value;
+            this.clearNull(row);
+        }
+
+        @Override
+        void resize(int capacity) {
+            this.values = Arrays.copyOf(this.values, capacity);
+        }
+
+        @Override
+        void move(int from, int to, int length) {
+            System.arraycopy(this.values, from, this.values, to, length);
+            moveNulls(from, to, length);
+        }
+
+        @Override
+        void reorder(int[] order, int count) {
+            double[] old = this.values.clone();
+            for (int idx = 0; idx < count; idx++) {
+                this.values[idx] = old[order[idx]];
+            }
+            reorderNulls(order, count);
+        }
+    }
+
+    /**
+     * Dictionary encoded strings, where each distinct value is stored once and the rows hold its code.
+     */
+    private static final class StringColumn extends Column {
+        private int[] codes;
+        private final List<String> dictionary = new ArrayList<>();
+        private final Map<String, Integer> lookup = new HashMap<>();
+
+        StringColumn(int capacity) {
+            this.codes = new int[capacity];
+        }
+
+        @Override
+        Object get(int row) {
+            return this.dictionary.get(this.codes[row]);
+        }
+
+        @Override
+        String getText(int row) {
+            return this.dictionary.get(this.codes[row]);
+        }
+
+        @Override
+        void set(int row, Object value, int column) {
+            String text = value.toString();
+            Integer code = this.lookup.get(text);
+            if (code == null) {
+                code = this.dictionary.size();
+                this.dictionary.add(text);
+                this.lookup.put(text, code);
+            }
+            this.codes[row] = code;
+        }
+
+        @Override
+        void resize(int capacity) {
+            this.codes = Arrays.copyOf(this.codes, capacity);
+        }
+
+        @Override
+        void move(int from, int to, int length) {
+            System.arraycopy(this.codes, from, this.codes, to, length);
+            moveNulls(from, to, length);
+        }
+
+        @Override
+        void reorder(int[] order, int count) {
+            int[] old = this.codes.clone();
+            for (int idx = 0; idx < count; idx++) {
+                this.codes[idx] = old[order[idx]];
+            }
+            reorderNulls(order, count);
+        }
+    }
+
+    private static final class ObjectColumn extends Column {
+        private Object[] values;
+
+        ObjectColumn(int capacity) {
+            this.values = new Object[capacity];
+        }
+
+        @Override
+        Object get(int row) {
+            return this.values[row];
+        }
+
+        @Override
+        String getText(int row) {
+            return PrettyTable.getCellText(this.values[row]);
+        }
+
+        @Override
+        void set(int row, Object value, int column) {
+            this.values[row] = value;
+        }
+
+        @Override
+        void setValue(int row, Object value, int column) {
+            super.setValue(row, value, column);
+            if (value == null) {
+                this.values[row] = null;
+            }
+        }
+
+        @Override
+        void release(int from, int to) {
+            Arrays.fill(this.values, from, to, null);
+        }
+
+        @Override
+        void resize(int capacity) {
+            this.values = Arrays.copyOf(this.values, capacity);
+        }
+
+        @Override
+        void move(int from, int to, int length) {
+            System.arraycopy(this.values, from, this.values, to, length);
+            moveNulls(from, to, length);
+        }
+
+        @Override
+        void reorder(int[] order, int count) {
+            Object[] old = this.values.clone();
+            for (int idx = 0; idx < count; idx++) {
+                this.values[idx] = old[order[idx]];
+            }
+            reorderNulls(order, count);
+        }
+    }
+}
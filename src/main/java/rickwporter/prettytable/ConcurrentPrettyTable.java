@@ -0,0 +1,135 @@
+package rickwporter.prettytable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import rickwporter.prettytable.PrettyTable.HorizontalAlign;
+import rickwporter.prettytable.PrettyTable.OutputFormat;
+
+/**
+ * Table that many threads can add rows to at once. The rows go into buffers striped by thread, so producers
+ * only wait on each other when their threads share a stripe, and snapshot() copies the rows into a PrettyTable
+ * (in the order they were added) to be sorted and rendered while the producers carry on. The buffers belong to
+ * the table, so nothing is left behind on the producer threads once the table is dropped.
+ */
+public final class ConcurrentPrettyTable {
+    private static final int INITIAL_CAPACITY = 64;
+    private static final int STRIPES_PER_CPU = 4;
+
+    private final List<String> headers;
+    private final Buffer[] buffers;
+    private final int stripeMask;
+    private final AtomicLong sequence = new AtomicLong();
+    private volatile List<HorizontalAlign> hAligns = new ArrayList<>();
+    private volatile OutputFormat defaultOutput = OutputFormat.TEXT;
+
+    public ConcurrentPrettyTable(String... hdrs) {
+        this.headers = new ArrayList<>(Arrays.asList(hdrs));
+        // a power of two, so a thread finds its stripe with a mask
+        int stripes = Integer.highestOneBit(Runtime.getRuntime().availableProcessors() * STRIPES_PER_CPU);
+        this.buffers = new Buffer[stripes];
+        for (int idx = 0; idx < stripes; idx++) {
+            this.buffers[idx] = new Buffer();
+        }
+        this.stripeMask = stripes - 1;
+    }
+
+    public List<String> getHeaders() {
+        return new ArrayList<>(this.headers);
+    }
+
+    public void addRow(Object... row) {
+        // the sequence number keeps the rows in the order they were added, across all of the threads
+        this.buffers[(int) Thread.currentThread().getId() & this.stripeMask].append(this.sequence, row);
+    }
+
+    public int getRowCount() {
+        int count = 0;
+        for (Buffer buffer : this.buffers) {
+            count += buffer.count;
+        }
+        return count;
+    }
+
+    public void setHorizAligns(HorizontalAlign... fmts) {
+        this.hAligns = new ArrayList<>(Arrays.asList(fmts));
+    }
+
+    public List<HorizontalAlign> getHorizAligns() {
+        return new ArrayList<>(this.hAligns);
+    }
+
+    public void setOutputFormat(OutputFormat format) {
+        this.defaultOutput = format;
+    }
+
+    public PrettyTable snapshot() {
+        // every row numbered below the cut, and no other, so a snapshot is always a prefix of the rows added
+        long cut = this.sequence.get();
+        List<Row> collected = new ArrayList<>();
+        for (Buffer buffer : this.buffers) {
+            buffer.copyTo(collected, cut);
+        }
+        collected.sort((row1, row2) -> Long.compare(row1.sequence, row2.sequence));
+        PrettyTable table = new PrettyTable(this.headers.toArray(new String[0]));
+        table.setHorizAligns(this.hAligns.toArray(new HorizontalAlign[0]));
+        table.setOutputFormat(this.defaultOutput);
+        for (Row row : collected) {
+            // each snapshot gets its own cells, so editing one never changes the buffered rows (or later snapshots)
+            table.addRow(row.cells.clone());
+        }
+        return table;
+    }
+
+    public String toString() {
+        return this.snapshot().toString();
+    }
+
+    /**
+     * Row with the sequence number it was added with.
+     */
+    private static final class Row {
+        private final long sequence;
+        private final Object[] cells;
+
+        Row(long seq, Object[] row) {
+            this.sequence = seq;
+            this.cells = row;
+        }
+    }
+
+    /**
+     * Rows added by the threads of one stripe. A row is numbered and stored while holding the lock, so once a
+     * snapshot has held it, every row numbered before its cut has been stored. The rows are published through
+     * the volatile count, and only ever appended, so they are copied without holding the lock.
+     */
+    private static final class Buffer {
+        private volatile Row[] rows = new Row[INITIAL_CAPACITY];
+        private volatile int count = 0;
+
+        synchronized void append(AtomicLong sequence, Object[] cells) {
+            Row[] current = this.rows;
+            if (this.count == current.length) {
+                current = Arrays.copyOf(current, current.length * 2);
+                this.rows = current;
+            }
+            current[this.count] = new Row(sequence.getAndIncrement(), cells);
+            this.count = this.count + 1;
+        }
+
+        void copyTo(List<Row> result, long cut) {
+            int size;
+            Row[] current;
+            synchronized (this) {
+                size = this.count;
+                current = this.rows;
+            }
+            // the rows of a stripe are in sequence order, so the ones before the cut come first
+            for (int idx = 0; idx < size && current[idx].sequence < cut; idx++) {
+                result.add(current[idx]);
+            }
+        }
+    }
+}
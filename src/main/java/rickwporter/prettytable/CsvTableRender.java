@@ -1,32 +1,44 @@
 package rickwporter.prettytable;
 
 import java.io.IOException;
-import java.util.List;
-import java.util.stream.Collectors;
 
 import org.apache.commons.csv.CSVFormat;
 import org.apache.commons.csv.CSVPrinter;
 
 class CsvTableRender implements TableRenderInterface {
+    private static final CSVFormat FORMAT = CSVFormat.DEFAULT.builder().setRecordSeparator("\n").build();
 
     @Override
     public String render(PrettyTable table, boolean removedRedundant) {
+        StringBuilder result = RenderBuffers.acquire();
         try {
-            StringBuilder result = new StringBuilder();
-            CSVFormat format = CSVFormat.DEFAULT.builder().setRecordSeparator("\n").build();
-            CSVPrinter printer = new CSVPrinter(result, format);
-            if (!table.getHeaders().isEmpty()) {
-                printer.printRecord(table.getHeaders());
-            }
-            for (List<? extends Object> row : table.getRows()) {
-                List<String> current = row.stream().map(c -> c.toString()).collect(Collectors.toList());
-                printer.printRecord(current);
-            }
-            printer.close();
+            render(table, removedRedundant, result);
             return result.toString();
         } catch (IOException ex) {
             // nothing to do here
+        } finally {
+            RenderBuffers.recycle(result);
         }
         return null;
     }
+
+    @Override
+    public void render(PrettyTable table, boolean removedRedundant, Appendable out) throws IOException {
+        render(table.prepare(), removedRedundant, out);
+    }
+
+    @Override
+    public void render(RenderPlan plan, boolean removedRedundant, Appendable out) throws IOException {
+        // NOTE: flush instead of close, so the caller's Appendable is left open
+        CSVPrinter printer = new CSVPrinter(out, FORMAT);
+        if (!plan.getHeaders().isEmpty()) {
+            printer.printRecord(plan.getHeaders());
+        }
+        plan.rowsWritten(0);
+        for (int rIdx = 0; rIdx < plan.getRowCount(); rIdx++) {
+            printer.printRecord((Object[]) plan.getRowText(rIdx));
+            plan.rowsWritten(rIdx + 1);
+        }
+        printer.flush();
+    }
 }
@@ -0,0 +1,117 @@
+package rickwporter.prettytable;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+import rickwporter.prettytable.RenderStats.Phase;
+
+/**
+ * Writes each render and sort as a JDK Flight Recorder event. Only loaded (by name) from
+ * RenderListeners.setFlightRecording(), so the library still runs where jdk.jfr is missing.
+ */
+final class FlightRecorderListener implements RenderListener {
+    private static final String CATEGORY = "PrettyTable";
+
+    @Override
+    public void rendered(RenderStats stats) {
+        RenderEvent event = new RenderEvent();
+        if (!event.shouldCommit()) {
+            return;
+        }
+        event.headers = String.join(",", stats.getTable().getHeaders());
+        event.format = stats.getFormat();
+        event.removeRedundant = stats.isRemoveRedundant();
+        event.rows = stats.getRowCount();
+        event.columns = stats.getColumnCount();
+        event.outputChars = stats.getOutputLength();
+        event.cacheHit = stats.isCacheHit();
+        event.totalTime = stats.getTotalNanos();
+        event.widthTime = stats.getNanos(Phase.WIDTHS);
+        event.textTime = stats.getNanos(Phase.TEXT);
+        event.nestedTime = stats.getNanos(Phase.NESTED);
+        event.outputTime = stats.getNanos(Phase.OUTPUT);
+        event.commit();
+    }
+
+    @Override
+    public void sorted(PrettyTable table, int rowCount, long nanos) {
+        SortEvent event = new SortEvent();
+        if (!event.shouldCommit()) {
+            return;
+        }
+        event.headers = String.join(",", table.getHeaders());
+        event.rows = rowCount;
+        event.sortTime = nanos;
+        event.commit();
+    }
+
+    @Name("rickwporter.prettytable.Render")
+    @Label("Table Render")
+    @Description("Render of a PrettyTable, with the time spent in each phase")
+    @Category(CATEGORY)
+    @StackTrace(false)
+    static final class RenderEvent extends Event {
+        @Label("Headers")
+        private String headers;
+
+        @Label("Format")
+        private String format;
+
+        @Label("Remove Redundant")
+        private boolean removeRedundant;
+
+        @Label("Rows")
+        private int rows;
+
+        @Label("Columns")
+        private int columns;
+
+        @Label("Output Chars")
+        @Description("Number of chars in the output, which is not the number of bytes once encoded")
+        private long outputChars;
+
+        @Label("Cache Hit")
+        private boolean cacheHit;
+
+        @Label("Total Time")
+        @Timespan(Timespan.NANOSECONDS)
+        private long totalTime;
+
+        @Label("Width Scan Time")
+        @Timespan(Timespan.NANOSECONDS)
+        private long widthTime;
+
+        @Label("Cell Text Time")
+        @Timespan(Timespan.NANOSECONDS)
+        private long textTime;
+
+        @Label("Nested Render Time")
+        @Timespan(Timespan.NANOSECONDS)
+        private long nestedTime;
+
+        @Label("Output Time")
+        @Timespan(Timespan.NANOSECONDS)
+        private long outputTime;
+    }
+
+    @Name("rickwporter.prettytable.Sort")
+    @Label("Table Sort")
+    @Category(CATEGORY)
+    @StackTrace(false)
+    static final class SortEvent extends Event {
+        @Label("Headers")
+        private String headers;
+
+        @Label("Rows")
+        private int rows;
+
+        @Label("Sort Time")
+        @Timespan(Timespan.NANOSECONDS)
+        private long sortTime;
+    }
+}
@@ -1,9 +1,9 @@
 package rickwporter.prettytable;
 
-import java.util.ArrayList;
+import java.io.IOException;
 import java.util.List;
-import java.util.stream.Collectors;
 
+import rickwporter.prettytable.PrettyTable.ColumnType;
 import rickwporter.prettytable.PrettyTable.HorizontalAlign;
 import rickwporter.prettytable.PrettyTable.OutputFormat;
 
@@ -14,77 +14,171 @@ class HtmlTableRender implements TableRenderInterface {
     private static final String HTML_ROW_TAG = "tr";
     private static final String HTML_CELL_BODY_TAG = "td";
     private static final String HTML_CELL_HEADER_TAG = "th";
+    private static final String HTML_LINE_BREAK = "<br/>";
 
-    String htmlColumnFormat(Integer column, List<HorizontalAlign> hAligns) {
-        if (hAligns.isEmpty()) {
-            return "";
+    private static final String INDENT = "    ";
+    private static final String ROW_INDENT = INDENT + INDENT;
+    private static final String CELL_INDENT = ROW_INDENT + INDENT;
+    private static final String NESTED_INDENT = CELL_INDENT + INDENT;
+
+    static void htmlEscape(Appendable out, String text, boolean lineBreaks) throws IOException {
+        // copies runs of plain characters in bulk, and only replaces the ones that need it
+        int start = 0;
+        int length = text.length();
+        for (int idx = 0; idx < length; idx++) {
+            String replacement;
+            switch (text.charAt(idx)) {
+            case '&':
+                replacement = "&amp;";
+                break;
+            case '<':
+                replacement = "&lt;";
+                break;
+            case '>':
+                replacement = "&gt;";
+                break;
+            case '\n':
+                replacement = lineBreaks ? HTML_LINE_BREAK : null;
+                break;
+            default:
+                replacement = null;
+                break;
+            }
+            if (replacement != null) {
+                out.append(text, start, idx).append(replacement);
+                start = idx + 1;
+            }
         }
-        return " style=\"" + hAligns.get(column).getHtmlStyle() + "\"";
+        out.append(text, start, length);
     }
 
-    String htmlRow(
-        List<? extends Object> row,
-        String initIndent,
-        String indent,
-        String cellTag,
-        List<HorizontalAlign> hAligns
-    ) {
-        String result = String.format("%s<%s>\n", initIndent, HTML_ROW_TAG);
-        for (int column = 0; column < row.size(); column++) {
-            Object obj = row.get(column);
-            String cellFormat = htmlColumnFormat(column, hAligns);
-            result += String.format(
-                "%s%s<%s%s>%s</%s>\n", initIndent, indent, cellTag, cellFormat, obj.toString(), cellTag
-            );
+    static void htmlNested(Appendable out, String html) throws IOException {
+        // puts each line of the nested table on its own line, indented one level past the cell
+        out.append('\n').append(NESTED_INDENT);
+        int start = 0;
+        int length = html.length();
+        for (int idx = 0; idx < length; idx++) {
+            if (html.charAt(idx) == '\n') {
+                out.append(html, start, idx + 1).append(idx + 1 == length ? CELL_INDENT : NESTED_INDENT);
+                start = idx + 1;
+            }
+        }
+        out.append(html, start, length);
+    }
+
+    static String[] htmlCellTags(String cellTag, int columns, List<HorizontalAlign> hAligns, boolean styled) {
+        String[] result = new String[columns];
+        for (int column = 0; column < columns; column++) {
+            result[column] = htmlCellTag(cellTag, column, hAligns, styled);
         }
-        result += String.format("%s</%s>\n", initIndent, HTML_ROW_TAG);
         return result;
     }
 
+    static String htmlCellTag(String cellTag, int column, List<HorizontalAlign> hAligns, boolean styled) {
+        if (!styled) {
+            return "<" + cellTag + ">";
+        }
+        return "<" + cellTag + " style=\"" + hAligns.get(column).getHtmlStyle() + "\">";
+    }
+
+    private void htmlRowStart(Appendable out) throws IOException {
+        out.append(ROW_INDENT).append('<').append(HTML_ROW_TAG).append(">\n");
+    }
+
+    private void htmlRowEnd(Appendable out) throws IOException {
+        out.append(ROW_INDENT).append("</").append(HTML_ROW_TAG).append(">\n");
+    }
+
+    private void htmlCellStart(Appendable out, String[] cellTags, int column) throws IOException {
+        // rows can be wider than the headers
+        String tag = column < cellTags.length ? cellTags[column] : "<" + HTML_CELL_BODY_TAG + ">";
+        out.append(CELL_INDENT).append(tag);
+    }
+
+    private void htmlCellEnd(Appendable out, String cellTag) throws IOException {
+        out.append("</").append(cellTag).append(">\n");
+    }
+
+    private void htmlCellValue(Appendable out, Object cell, String text) throws IOException {
+        if (cell instanceof PrettyTable) {
+            PrettyTable t = (PrettyTable) cell;
+            if (t.getDefaultOutput() == OutputFormat.HTML) {
+                // the nested table's text is already HTML, since it uses its default output
+                htmlNested(out, text);
+            } else {
+                htmlEscape(out, text, true);
+            }
+            return;
+        }
+        htmlEscape(out, text, false);
+    }
+
     @Override
     public String render(PrettyTable table, boolean removeRedundant) {
-        StringBuilder result = new StringBuilder();
-        String indent = "    ";
-        List<HorizontalAlign> hAligns = table.getHorizAligns();
-
-        result.append(String.format("<%s>\n", HTML_TABLE_TAG));
-        if (!table.getHeaders().isEmpty()) {
-            result.append(String.format("%s<%s>\n", indent, HTML_HEADER_TAG));
-            result.append(htmlRow(table.getHeaders(), indent + indent, indent, HTML_CELL_HEADER_TAG, hAligns));
-            result.append(String.format("%s</%s>\n", indent, HTML_HEADER_TAG));
+        StringBuilder result = RenderBuffers.acquire();
+        try {
+            render(table, removeRedundant, result);
+            return result.toString();
+        } catch (IOException ex) {
+            // nothing to do here
+        } finally {
+            RenderBuffers.recycle(result);
         }
+        return null;
+    }
 
-        result.append(String.format("%s<%s>\n", indent, HTML_BODY_TAG));
-        List<String> lastRow = new ArrayList<>();
-        for (List<Object> row : table.getRows()) {
-            List<String> currentRow = row.stream()
-                .map(c -> {
-                    if (c instanceof PrettyTable)  {
-                        PrettyTable t = (PrettyTable) c;
-                        if (t.getDefaultOutput() == OutputFormat.HTML) {
-                            String out = "\n" + t.toHtml(true);
-                            out = out.replaceAll("\n", "\n" + indent + indent + indent + indent);
-                            return out.substring(0, out.lastIndexOf(indent));
-                        }
-                        return t.toString().replace("\n", "<br/>");
-                    }
-                    return c.toString();
-                })
-                .collect(Collectors.toList());
-            List<String> fullRow = new ArrayList<String>(currentRow);  // make a copy before manipulating
-            if (removeRedundant) {
-                for (int i = 0; i < lastRow.size(); i++) {
-                    if (!lastRow.get(i).equals(currentRow.get(i))) {
-                        break;
-                    }
-                    currentRow.set(i, "");
+    @Override
+    public void render(PrettyTable table, boolean removeRedundant, Appendable out) throws IOException {
+        render(table.prepare(), removeRedundant, out);
+    }
+
+    @Override
+    public void render(RenderPlan plan, boolean removeRedundant, Appendable out) throws IOException {
+        // alignment styles are only written when the table has any alignments set
+        boolean styled = !plan.getTable().getHorizAligns().isEmpty();
+        List<HorizontalAlign> hAligns = plan.getHorizAligns();
+        List<String> headers = plan.getHeaders();
+
+        out.append('<').append(HTML_TABLE_TAG).append(">\n");
+        if (!headers.isEmpty()) {
+            String[] headerTags = htmlCellTags(HTML_CELL_HEADER_TAG, headers.size(), hAligns, styled);
+            out.append(INDENT).append('<').append(HTML_HEADER_TAG).append(">\n");
+            htmlRowStart(out);
+            for (int column = 0; column < headers.size(); column++) {
+                out.append(CELL_INDENT).append(headerTags[column]);
+                htmlEscape(out, headers.get(column), false);
+                htmlCellEnd(out, HTML_CELL_HEADER_TAG);
+            }
+            htmlRowEnd(out);
+            out.append(INDENT).append("</").append(HTML_HEADER_TAG).append(">\n");
+        }
+
+        String[] cellTags = htmlCellTags(HTML_CELL_BODY_TAG, plan.getMaxColumns(), hAligns, styled);
+        out.append(INDENT).append('<').append(HTML_BODY_TAG).append(">\n");
+        String[] lastRow = plan.getPreviousRowText();
+        plan.rowsWritten(0);
+        for (int rIdx = 0; rIdx < plan.getRowCount(); rIdx++) {
+            List<Object> row = plan.getRow(rIdx);
+            String[] texts = plan.getRowText(rIdx);
+            boolean redundant = removeRedundant;
+            htmlRowStart(out);
+            for (int column = 0; column < texts.length; column++) {
+                redundant = redundant && column < lastRow.length && lastRow[column].equals(texts[column]);
+                htmlCellStart(out, cellTags, column);
+                if (!redundant) {
+                    // only the object columns can hold nested tables, so the typed cells are never boxed
+                    Object cell = plan.getColumnType(column) == ColumnType.OBJECT ? row.get(column) : null;
+                    htmlCellValue(out, cell, texts[column]);
                 }
-                lastRow = fullRow;
+                htmlCellEnd(out, HTML_CELL_BODY_TAG);
+            }
+            htmlRowEnd(out);
+            plan.rowsWritten(rIdx + 1);
+            if (removeRedundant) {
+                lastRow = texts;
             }
-            result.append(htmlRow(currentRow, indent + indent, indent, HTML_CELL_BODY_TAG, hAligns));
         }
-        result.append(String.format("%s</%s>\n", indent, HTML_BODY_TAG));
-        result.append(String.format("</%s>\n", HTML_TABLE_TAG));
-        return result.toString();
+        out.append(INDENT).append("</").append(HTML_BODY_TAG).append(">\n");
+        out.append("</").append(HTML_TABLE_TAG).append(">\n");
     }
 }
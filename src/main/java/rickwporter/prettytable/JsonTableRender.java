@@ -1,89 +1,228 @@
 package rickwporter.prettytable;
 
-import java.util.ArrayList;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
 import java.util.List;
-import java.util.stream.Collectors;
-import org.apache.commons.lang3.StringUtils;
 
+import rickwporter.prettytable.PrettyTable.ColumnType;
 import rickwporter.prettytable.PrettyTable.OutputFormat;
 
 class JsonTableRender implements TableRenderInterface {
-    String jsonEncode(Object object) {
-        if (object instanceof Integer) {
-            return object.toString();
+    private static final String INDENT = "    ";
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+    private static final int HEX_DIGIT_BITS = 4;
+    private static final int HEX_DIGIT_MASK = 0xF;
+    private static final int DECIMAL_RADIX = 10;
+
+    static boolean isJsonInteger(String text) {
+        // same strings as accepted by Integer.parseInt(), but without throwing when it is not a number
+        int length = text.length();
+        int idx = 0;
+        boolean negative = false;
+        if (length > 0 && (text.charAt(0) == '-' || text.charAt(0) == '+')) {
+            negative = text.charAt(0) == '-';
+            idx++;
         }
-        try {
-            Integer value = Integer.parseInt(object.toString());
-            return value.toString();
-        } catch (NumberFormatException ex) {
-            // nothing to do here, just double-quote as below
+        if (idx == length) {
+            return false;
+        }
+        long limit = negative ? -(long) Integer.MIN_VALUE : Integer.MAX_VALUE;
+        long value = 0;
+        for (; idx < length; idx++) {
+            char ch = text.charAt(idx);
+            if (ch < '0' || ch > '9') {
+                return false;
+            }
+            value = value * DECIMAL_RADIX + (ch - '0');
+            if (value > limit) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    static void jsonInteger(Appendable out, String text) throws IOException {
+        // written the way Integer.toString() would, e.g. "+007" is written as 7
+        int idx = text.charAt(0) == '-' || text.charAt(0) == '+' ? 1 : 0;
+        int last = text.length() - 1;
+        while (idx < last && text.charAt(idx) == '0') {
+            idx++;
+        }
+        if (text.charAt(0) == '-' && !(idx == last && text.charAt(idx) == '0')) {
+            out.append('-');
+        }
+        out.append(text, idx, text.length());
+    }
+
+    static void jsonString(Appendable out, String text) throws IOException {
+        // copies runs of plain characters in bulk, and only escapes the ones that need it
+        out.append('"');
+        int start = 0;
+        int length = text.length();
+        for (int idx = 0; idx < length; idx++) {
+            char ch = text.charAt(idx);
+            if (ch >= ' ' && ch != '"' && ch != '\\') {
+                continue;
+            }
+            out.append(text, start, idx);
+            start = idx + 1;
+            switch (ch) {
+            case '"':
+                out.append("\\\"");
+                break;
+            case '\\':
+                out.append("\\\\");
+                break;
+            case '\n':
+                out.append("\\n");
+                break;
+            case '\r':
+                out.append("\\r");
+                break;
+            case '\t':
+                out.append("\\t");
+                break;
+            case '\b':
+                out.append("\\b");
+                break;
+            case '\f':
+                out.append("\\f");
+                break;
+            default:
+                out.append("\\u00").append(HEX_DIGITS[ch >> HEX_DIGIT_BITS]).append(HEX_DIGITS[ch & HEX_DIGIT_MASK]);
+                break;
+            }
+        }
+        out.append(text, start, length).append('"');
+    }
+
+    static void jsonEncode(Appendable out, Object object, String text) throws IOException {
+        if (object == null) {
+            out.append("null");
+        } else if (object instanceof Boolean || object instanceof Integer || object instanceof Long
+            || object instanceof Short || object instanceof Byte
+            || object instanceof BigInteger || object instanceof BigDecimal) {
+            out.append(text);
+        } else if (object instanceof Double || object instanceof Float) {
+            double value = ((Number) object).doubleValue();
+            if (Double.isNaN(value) || Double.isInfinite(value)) {
+                jsonString(out, text);
+            } else {
+                out.append(text);
+            }
+        } else if (isJsonInteger(text)) {
+            jsonInteger(out, text);
+        } else {
+            jsonString(out, text);
         }
-        return String.format(
-            "\"%s\"",
-            object.toString()
-                .replace("\r", "\\r")
-                .replace("\n", "\\n")
-                .replace("\"", "\\\"")
-            );
     }
 
-    String jsonValue(Object cellObj, String initIndent, String indent) {
+    static void jsonNested(Appendable out, String json, String initIndent) throws IOException {
+        // indents each line of the nested table, and drops its trailing newline
+        int end = json.lastIndexOf('\n');
+        int start = 0;
+        for (int idx = 0; idx < end; idx++) {
+            if (json.charAt(idx) == '\n') {
+                out.append(json, start, idx + 1).append(initIndent);
+                start = idx + 1;
+            }
+        }
+        out.append(json, start, end);
+    }
+
+    static void jsonTyped(Appendable out, ColumnType type, String text) throws IOException {
+        // primitive cells are only ever empty when they are null
+        if (text.isEmpty()) {
+            out.append("null");
+        } else if (type == ColumnType.DOUBLE && (text.endsWith("NaN") || text.endsWith("Infinity"))) {
+            jsonString(out, text);
+        } else {
+            out.append(text);
+        }
+    }
+
+    void jsonValue(Appendable out, Object cellObj, String text, String rowIndent) throws IOException {
         if (cellObj instanceof PrettyTable) {
             PrettyTable t = (PrettyTable) cellObj;
             if (t.getDefaultOutput() == OutputFormat.JSON) {
-                String out = t.toJson().replace("\n", "\n" + initIndent);
-                return out.substring(0, out.lastIndexOf("\n" + initIndent));
+                // the nested table's text is already JSON, since it uses its default output
+                jsonNested(out, text, rowIndent + INDENT);
+                return;
             }
         }
-        return jsonEncode(cellObj);
+        jsonEncode(out, cellObj, text);
     }
 
-    String jsonRow(List<Object> row, String initIndent, String indent, List<String> headers) {
-        List<String> rowValues = new ArrayList<>();
-        for (int cIdx = 0; cIdx < row.size(); cIdx++) {
-            String value = this.jsonValue(row.get(cIdx), initIndent + indent, indent);
+    void jsonRow(Appendable out, RenderPlan plan, int rowIndex, String initIndent, List<String> headers)
+        throws IOException {
+        List<Object> row = plan.getRow(rowIndex);
+        String[] texts = plan.getRowText(rowIndex);
+        for (int cIdx = 0; cIdx < texts.length; cIdx++) {
+            if (cIdx > 0) {
+                out.append(",\n");
+            }
+            out.append(initIndent).append(INDENT);
             if (!headers.isEmpty()) {
-                rowValues.add(
-                    String.format("%s%s\"%s\": %s",
-                        initIndent,
-                        indent,
-                        headers.get(cIdx),
-                        value)
-                );
+                jsonString(out, headers.get(cIdx));
+                out.append(": ");
+            }
+            ColumnType type = plan.getColumnType(cIdx);
+            if (type == ColumnType.INT || type == ColumnType.LONG || type == ColumnType.DOUBLE) {
+                jsonTyped(out, type, texts[cIdx]);
             } else {
-                rowValues.add(
-                    String.format("%s%s%s", initIndent, indent, value)
-                );
+                this.jsonValue(out, row.get(cIdx), texts[cIdx], initIndent);
             }
         }
-        return StringUtils.join(rowValues, ",\n");
+        out.append('\n');
     }
 
     @Override
     public String render(PrettyTable table, boolean removeRedundant) {
-        StringBuilder result = new StringBuilder();
-        String indent = "    ";
-        result.append("[\n");
+        StringBuilder result = RenderBuffers.acquire();
+        try {
+            render(table, removeRedundant, result);
+            return result.toString();
+        } catch (IOException ex) {
+            // nothing to do here
+        } finally {
+            RenderBuffers.recycle(result);
+        }
+        return null;
+    }
+
+    @Override
+    public void render(PrettyTable table, boolean removeRedundant, Appendable out) throws IOException {
+        render(table.prepare(), removeRedundant, out);
+    }
+
+    @Override
+    public void render(RenderPlan plan, boolean removeRedundant, Appendable out) throws IOException {
+        out.append("[\n");
         String entryPrefix = "";
-        List<String> headers = table.getHeaders();
+        List<String> headers = plan.getHeaders();
         if (!headers.isEmpty()) {
-            result.append(String.format("%s[\n", indent));
-            List<String> headerValues = headers.stream()
-                .map(h -> String.format("%s%s\"%s\"", indent, indent, h))
-                .collect(Collectors.toList());
-            result.append(StringUtils.join(headerValues, ",\n") + "\n");
-            result.append(String.format("%s]", indent));
+            out.append(INDENT).append("[\n");
+            for (int cIdx = 0; cIdx < headers.size(); cIdx++) {
+                if (cIdx > 0) {
+                    out.append(",\n");
+                }
+                out.append(INDENT).append(INDENT);
+                jsonString(out, headers.get(cIdx));
+            }
+            out.append('\n').append(INDENT).append(']');
             entryPrefix = ",\n";
         }
-        String entryStart = table.getHeaders().isEmpty() ? "[" : "{";
-        String entryEnd = table.getHeaders().isEmpty() ? "]" : "}";
-        for (List<Object> row : table.getRows()) {
-            result.append(String.format("%s%s%s\n", entryPrefix, indent, entryStart));
-            result.append(jsonRow(row, indent, indent, headers) + "\n");
-            result.append(String.format("%s%s", indent, entryEnd));
+        char entryStart = headers.isEmpty() ? '[' : '{';
+        char entryEnd = headers.isEmpty() ? ']' : '}';
+        plan.rowsWritten(0);
+        for (int rIdx = 0; rIdx < plan.getRowCount(); rIdx++) {
+            out.append(entryPrefix).append(INDENT).append(entryStart).append('\n');
+            jsonRow(out, plan, rIdx, INDENT, headers);
+            out.append(INDENT).append(entryEnd);
+            plan.rowsWritten(rIdx + 1);
             entryPrefix = ",\n";
         }
-        result.append("\n]\n");
-        return result.toString();
+        out.append("\n]\n");
     }
 }
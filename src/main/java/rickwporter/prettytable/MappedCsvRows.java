@@ -0,0 +1,342 @@
+package rickwporter.prettytable;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Rows of a memory-mapped CSV file. Opening the file only finds where each record starts, and a cell is
+ * decoded from the mapped bytes when it is read, so a column can be measured or sorted without decoding the
+ * others. The file is parsed the same way as CSVFormat.DEFAULT: fields are separated by commas, may be quoted
+ * (with "" for a quote inside the field), and empty lines are skipped. A field is only quoted when it starts
+ * with a quote, so a quote further into a field is part of its text.
+ */
+final class MappedCsvRows extends AbstractList<List<Object>> implements ReorderableRows {
+    // files larger than a single mapping are mapped in segments of this size
+    private static final int SEGMENT_BITS = 30;
+    private static final long SEGMENT_SIZE = 1L << SEGMENT_BITS;
+    private static final long SEGMENT_MASK = SEGMENT_SIZE - 1;
+    private static final int INITIAL_CAPACITY = 1024;
+    private static final byte[] UTF8_BOM = {(byte) 0xEF, (byte) 0xBB, (byte) 0xBF};
+
+    private final MappedByteBuffer[] segments;
+    private final long length;
+    private final List<String> headers;
+    private long[] offsets = new long[INITIAL_CAPACITY];
+    private int[] counts = new int[INITIAL_CAPACITY];
+    // rows added or replaced after the file was read, which are held as they are
+    private Object[] overrides = new Object[INITIAL_CAPACITY];
+    private int size = 0;
+
+    MappedCsvRows(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            this.length = channel.size();
+            this.segments = new MappedByteBuffer[(int) ((this.length + SEGMENT_MASK) >>> SEGMENT_BITS)];
+            for (int sIdx = 0; sIdx < this.segments.length; sIdx++) {
+                long start = (long) sIdx << SEGMENT_BITS;
+                long mapped = Math.min(SEGMENT_SIZE, this.length - start);
+                this.segments[sIdx] = channel.map(FileChannel.MapMode.READ_ONLY, start, mapped);
+            }
+        }
+        // the first record holds the headers, and the others are only indexed
+        List<String> firstRecord = null;
+        int[] fields = new int[1];
+        long start = this.hasBom() ? UTF8_BOM.length : 0;
+        while (start < this.length) {
+            long end = this.scanRecord(start, fields);
+            if (fields[0] > 0 && firstRecord == null) {
+                firstRecord = new ArrayList<>();
+                long[] bounds = this.fieldBounds(start, fields[0]);
+                for (int cIdx = 0; cIdx < fields[0]; cIdx++) {
+                    firstRecord.add(this.field(bounds, cIdx));
+                }
+            } else if (fields[0] > 0) {
+                this.append(start, fields[0]);
+            }
+            start = this.nextRecord(end);
+        }
+        this.headers = firstRecord == null ? new ArrayList<>() : firstRecord;
+    }
+
+    private boolean hasBom() {
+        if (this.length < UTF8_BOM.length) {
+            return false;
+        }
+        for (int idx = 0; idx < UTF8_BOM.length; idx++) {
+            if (this.byteAt(idx) != UTF8_BOM[idx]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    List<String> getHeaders() {
+        return this.headers;
+    }
+
+    private byte byteAt(long position) {
+        return this.segments[(int) (position >>> SEGMENT_BITS)].get((int) (position & SEGMENT_MASK));
+    }
+
+    private void append(long offset, int fields) {
+        this.ensureCapacity(this.size + 1);
+        this.offsets[this.size] = offset;
+        this.counts[this.size] = fields;
+        this.size++;
+    }
+
+    private void ensureCapacity(int needed) {
+        if (needed <= this.offsets.length) {
+            return;
+        }
+        int capacity = Math.max(needed, this.offsets.length + (this.offsets.length >> 1));
+        this.offsets = Arrays.copyOf(this.offsets, capacity);
+        this.counts = Arrays.copyOf(this.counts, capacity);
+        this.overrides = Arrays.copyOf(this.overrides, capacity);
+    }
+
+    private boolean isRecordEnd(long position) {
+        byte ch = this.byteAt(position);
+        return ch == '\n' || ch == '\r';
+    }
+
+    private long fieldEnd(long start) {
+        // position of the comma or line break after the field, skipping over the quoted text of a quoted field
+        long pos = start;
+        if (pos < this.length && this.byteAt(pos) == '"') {
+            pos = Math.min(this.closingQuote(pos + 1) + 1, this.length);
+        }
+        while (pos < this.length) {
+            byte ch = this.byteAt(pos);
+            if (ch == ',' || ch == '\n' || ch == '\r') {
+                return pos;
+            }
+            pos++;
+        }
+        return pos;
+    }
+
+    private long closingQuote(long start) {
+        // inside a quoted field only a pair of quotes, which stands for one, or the closing quote are special
+        long pos = start;
+        while (pos < this.length) {
+            if (this.byteAt(pos) == '"') {
+                if (pos + 1 < this.length && this.byteAt(pos + 1) == '"') {
+                    pos += 2;
+                    continue;
+                }
+                return pos;
+            }
+            pos++;
+        }
+        return pos;
+    }
+
+    private long nextRecord(long end) {
+        // a record ends with \n, \r\n or \r
+        long next = end;
+        if (next < this.length && this.byteAt(next) == '\r') {
+            next++;
+        }
+        if (next < this.length && this.byteAt(next) == '\n') {
+            next++;
+        }
+        return next;
+    }
+
+    private long scanRecord(long start, int[] fields) {
+        // returns where the record ends, with the number of fields in it (none for an empty line)
+        if (this.isRecordEnd(start)) {
+            fields[0] = 0;
+            return start;
+        }
+        fields[0] = 1;
+        long pos = this.fieldEnd(start);
+        while (pos < this.length && this.byteAt(pos) == ',') {
+            fields[0]++;
+            pos = this.fieldEnd(pos + 1);
+        }
+        return pos;
+    }
+
+    private long[] fieldBounds(long recordStart, int fields) {
+        // where each field starts, and one past the end of the last, from a single scan of the record
+        long[] bounds = new long[fields + 1];
+        bounds[0] = recordStart;
+        for (int cIdx = 0; cIdx < fields; cIdx++) {
+            bounds[cIdx + 1] = this.fieldEnd(bounds[cIdx]) + 1;
+        }
+        return bounds;
+    }
+
+    private String field(long[] bounds, int column) {
+        long start = bounds[column];
+        long end = bounds[column + 1] - 1;
+        byte[] bytes = new byte[(int) (end - start)];
+        int count = 0;
+        long pos = start;
+        if (end > start && this.byteAt(start) == '"') {
+            // drops the enclosing quotes, and turns each pair of quotes inside into one
+            long closing = Math.min(this.closingQuote(start + 1), end);
+            for (pos = start + 1; pos < closing; pos++) {
+                byte ch = this.byteAt(pos);
+                bytes[count++] = ch;
+                if (ch == '"') {
+                    pos++;
+                }
+            }
+            pos = closing + 1;
+        }
+        // any text after the closing quote is kept as it is
+        for (; pos < end; pos++) {
+            bytes[count++] = this.byteAt(pos);
+        }
+        return new String(bytes, 0, count, StandardCharsets.UTF_8);
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<Object> override(int row) {
+        return (List<Object>) this.overrides[row];
+    }
+
+    private void checkRow(int row) {
+        if (row < 0 || row >= this.size) {
+            throw new IndexOutOfBoundsException("Row " + row + " of " + this.size);
+        }
+    }
+
+    @Override
+    public int size() {
+        return this.size;
+    }
+
+    @Override
+    public List<Object> get(int row) {
+        checkRow(row);
+        List<Object> override = this.override(row);
+        return override != null ? override : new RowView(row);
+    }
+
+    @Override
+    public List<Object> set(int row, List<Object> values) {
+        checkRow(row);
+        List<Object> old = Arrays.asList(this.get(row).toArray());
+        this.overrides[row] = values;
+        return old;
+    }
+
+    @Override
+    public void add(int row, List<Object> values) {
+        if (row < 0 || row > this.size) {
+            throw new IndexOutOfBoundsException("Row " + row + " of " + this.size);
+        }
+        this.ensureCapacity(this.size + 1);
+        System.arraycopy(this.offsets, row, this.offsets, row + 1, this.size - row);
+        System.arraycopy(this.counts, row, this.counts, row + 1, this.size - row);
+        System.arraycopy(this.overrides, row, this.overrides, row + 1, this.size - row);
+        this.overrides[row] = values;
+        this.size++;
+        this.modCount++;
+    }
+
+    @Override
+    public List<Object> remove(int row) {
+        checkRow(row);
+        List<Object> old = Arrays.asList(this.get(row).toArray());
+        int moved = this.size - row - 1;
+        System.arraycopy(this.offsets, row + 1, this.offsets, row, moved);
+        System.arraycopy(this.counts, row + 1, this.counts, row, moved);
+        System.arraycopy(this.overrides, row + 1, this.overrides, row, moved);
+        this.size--;
+        this.overrides[this.size] = null;
+        this.modCount++;
+        return old;
+    }
+
+    @Override
+    public void reorder(int[] order) {
+        long[] oldOffsets = this.offsets.clone();
+        int[] oldCounts = this.counts.clone();
+        Object[] oldOverrides = this.overrides.clone();
+        for (int idx = 0; idx < order.length; idx++) {
+            this.offsets[idx] = oldOffsets[order[idx]];
+            this.counts[idx] = oldCounts[order[idx]];
+            this.overrides[idx] = oldOverrides[order[idx]];
+        }
+    }
+
+    private int findRecord(int hint, long offset) {
+        // where the record now is, or -1 once it has been removed or replaced
+        if (hint < this.size && this.offsets[hint] == offset && this.overrides[hint] == null) {
+            return hint;
+        }
+        for (int idx = 0; idx < this.size; idx++) {
+            if (this.offsets[idx] == offset && this.overrides[idx] == null) {
+                return idx;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Record of the file, where each cell is decoded when it is read. The view holds on to its record, rather
+     * than to a row index, so it still reads and writes the same record after the rows are sorted, or rows
+     * are added or removed before it.
+     */
+    private final class RowView extends AbstractList<Object> {
+        private final long offset;
+        private final int fields;
+        private int row;
+        // found the first time a cell is read, so reading every cell only scans the record once
+        private long[] bounds;
+        // the cells, once one of them has been changed
+        private List<Object> copy;
+
+        RowView(int rowIndex) {
+            this.row = rowIndex;
+            this.offset = MappedCsvRows.this.offsets[rowIndex];
+            this.fields = MappedCsvRows.this.counts[rowIndex];
+        }
+
+        @Override
+        public int size() {
+            return this.copy != null ? this.copy.size() : this.fields;
+        }
+
+        @Override
+        public Object get(int column) {
+            if (this.copy != null) {
+                return this.copy.get(column);
+            }
+            if (column < 0 || column >= this.fields) {
+                throw new IndexOutOfBoundsException("Column " + column + " of " + this.fields);
+            }
+            if (this.bounds == null) {
+                this.bounds = MappedCsvRows.this.fieldBounds(this.offset, this.fields);
+            }
+            return MappedCsvRows.this.field(this.bounds, column);
+        }
+
+        @Override
+        public Object set(int column, Object value) {
+            // the record is copied out of the file the first time one of its cells is changed, and the copy
+            // takes its place in the rows, unless it has been removed or replaced since
+            if (this.copy == null) {
+                List<Object> cells = Arrays.asList(this.toArray());
+                this.row = MappedCsvRows.this.findRecord(this.row, this.offset);
+                if (this.row >= 0) {
+                    MappedCsvRows.this.overrides[this.row] = cells;
+                }
+                this.copy = cells;
+            }
+            return this.copy.set(column, value);
+        }
+    }
+}
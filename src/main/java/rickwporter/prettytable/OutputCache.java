@@ -0,0 +1,60 @@
+package rickwporter.prettytable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import rickwporter.prettytable.PrettyTable.HorizontalAlign;
+import rickwporter.prettytable.PrettyTable.OutputFormat;
+
+/**
+ * Rendered output of a table for each format and removeRedundant setting, kept for as long as the table
+ * version, headers and alignments stay the same. The headers and alignments are compared by value, since
+ * they are returned to the caller as live lists.
+ */
+final class OutputCache {
+    private final String[] outputs = new String[OutputFormat.values().length * 2];
+    private long version = -1;
+    private List<String> headers = new ArrayList<>();
+    private List<HorizontalAlign> hAligns = new ArrayList<>();
+    private long hits = 0;
+    private long misses = 0;
+
+    private static int slot(OutputFormat format, boolean removeRedundant) {
+        return format.ordinal() * 2 + (removeRedundant ? 1 : 0);
+    }
+
+    private void validate(long tableVersion, List<String> tableHeaders, List<HorizontalAlign> tableAligns) {
+        if (tableVersion == this.version && tableHeaders.equals(this.headers) && tableAligns.equals(this.hAligns)) {
+            return;
+        }
+        Arrays.fill(this.outputs, null);
+        this.version = tableVersion;
+        this.headers = new ArrayList<>(tableHeaders);
+        this.hAligns = new ArrayList<>(tableAligns);
+    }
+
+    String get(PrettyTable table, long tableVersion, OutputFormat format, boolean removeRedundant) {
+        this.validate(tableVersion, table.getHeaders(), table.getHorizAligns());
+        String output = this.outputs[slot(format, removeRedundant)];
+        if (output == null) {
+            this.misses++;
+        } else {
+            this.hits++;
+        }
+        return output;
+    }
+
+    long getHits() {
+        return this.hits;
+    }
+
+    long getMisses() {
+        return this.misses;
+    }
+
+    void put(OutputFormat format, boolean removeRedundant, String output) {
+        // only valid for the version passed to the get() just before
+        this.outputs[slot(format, removeRedundant)] = output;
+    }
+}
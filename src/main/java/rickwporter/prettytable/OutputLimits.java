@@ -0,0 +1,309 @@
+package rickwporter.prettytable;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Limits on how much of a table is rendered: the number of rows, the width of a cell in the text output
+ * (with the rest of a line truncated or wrapped), and the length of the output. Rendering stops as soon as
+ * the output would go over its limit, so a huge table never gets rendered in full. The text output ends with
+ * a line saying what was left out, which is counted within the limit, while the other formats end at the
+ * last whole row that fits.
+ */
+final class OutputLimits {
+    static final String ELLIPSIS = "...";
+
+    private int maxRows = 0;
+    private int maxCellWidth = 0;
+    private int maxLength = 0;
+    private CellOverflow overflow = CellOverflow.TRUNCATE;
+
+    boolean isSet() {
+        return this.maxRows > 0 || this.maxCellWidth > 0 || this.maxLength > 0;
+    }
+
+    int getMaxRows() {
+        return this.maxRows;
+    }
+
+    void setMaxRows(int rows) {
+        this.maxRows = Math.max(0, rows);
+    }
+
+    int getMaxCellWidth() {
+        return this.maxCellWidth;
+    }
+
+    void setMaxCellWidth(int width) {
+        this.maxCellWidth = Math.max(0, width);
+    }
+
+    int getMaxLength() {
+        return this.maxLength;
+    }
+
+    void setMaxLength(int length) {
+        this.maxLength = Math.max(0, length);
+    }
+
+    CellOverflow getOverflow() {
+        return this.overflow;
+    }
+
+    void setOverflow(CellOverflow policy) {
+        this.overflow = policy;
+    }
+
+    int shownRows(int rowCount) {
+        return this.maxRows > 0 ? Math.min(rowCount, this.maxRows) : rowCount;
+    }
+
+    int capWidth(int width) {
+        return this.maxCellWidth > 0 ? Math.min(width, this.maxCellWidth) : width;
+    }
+
+    String limitText(String text) {
+        // the width is only measured up to the limit, so a long cell is not scanned to its end
+        if (this.maxCellWidth == 0 || PrettyTable.getTextWidth(text, this.maxCellWidth + 1) <= this.maxCellWidth) {
+            return text;
+        }
+        return String.join("\n", fit(RenderPlan.splitLines(text), this.maxCellWidth, this.overflow));
+    }
+
+    static String[] fit(String[] lines, int width, CellOverflow overflow) {
+        List<String> result = null;
+        for (int idx = 0; idx < lines.length; idx++) {
+            String line = lines[idx];
+            if (DisplayWidth.of(line) <= width) {
+                if (result != null) {
+                    result.add(line);
+                }
+                continue;
+            }
+            if (result == null) {
+                result = new ArrayList<>(Arrays.asList(lines).subList(0, idx));
+            }
+            if (overflow == CellOverflow.WRAP && width > 0) {
+                int start = 0;
+                while (start < line.length()) {
+                    // a character wider than the column still gets a line of its own
+                    int end = Math.max(DisplayWidth.prefixEnd(line, start, width), line.offsetByCodePoints(start, 1));
+                    result.add(line.substring(start, end));
+                    start = end;
+                }
+            } else if (width > ELLIPSIS.length()) {
+                result.add(line.substring(0, DisplayWidth.prefixEnd(line, 0, width - ELLIPSIS.length())) + ELLIPSIS);
+            } else {
+                result.add(line.substring(0, DisplayWidth.prefixEnd(line, 0, width)));
+            }
+        }
+        return result == null ? lines : result.toArray(new String[0]);
+    }
+
+    void render(PrettyTable table, TableRenderInterface renderer, boolean removeRedundant, Appendable out)
+        throws IOException {
+        boolean text = renderer == PrettyTable.rendererFor(PrettyTable.OutputFormat.TEXT);
+        if (this.maxLength > 0 && !text) {
+            this.wholeRows(table, renderer, removeRedundant, out);
+            return;
+        }
+        // the other formats are left as they are, so they can still be parsed
+        int omitted = table.getRowCount() - this.shownRows(table.getRowCount());
+        String moreRows = omitted > 0 && text ? ELLIPSIS + " " + omitted + " more rows\n" : "";
+        if (this.maxLength == 0) {
+            renderer.render(table, removeRedundant, out);
+            out.append(moreRows);
+            return;
+        }
+        // room is kept for whichever line ends the output, so it never goes over the limit
+        String truncated = ELLIPSIS + " output truncated at " + this.maxLength + " chars\n";
+        BoundedOutput bounded = new BoundedOutput(out, this.maxLength - moreRows.length(),
+            this.maxLength - truncated.length());
+        try {
+            renderer.render(table, removeRedundant, bounded);
+            bounded.finish();
+        } catch (LimitReached ex) {
+            if (truncated.length() <= this.maxLength) {
+                out.append(truncated);
+            }
+            return;
+        }
+        out.append(moreRows);
+    }
+
+    private void wholeRows(PrettyTable table, TableRenderInterface renderer, boolean removeRedundant,
+        Appendable out) throws IOException {
+        // the other formats are cut after a row, rather than a line, so the output is still a complete document.
+        // The rows are rendered once, noting how long the output is as each one ends, and the end of the
+        // document is taken from the headers rendered on their own. Renderers that do not say where their rows
+        // end are written whole, or not at all.
+        RenderPlan plan = table.prepare();
+        CappedOutput rendered = new CappedOutput(this.maxLength);
+        int[] rowEnds = new int[plan.getRowCount() + 1];
+        Arrays.fill(rowEnds, -1);
+        plan.onRowsWritten(count -> rowEnds[count] = rendered.length());
+        try {
+            renderer.render(plan, removeRedundant, rendered);
+            out.append(rendered.text);
+            return;
+        } catch (LimitReached ex) {
+            // cut at the last row that fits below
+        }
+        RenderPlan headers = table.prepare(0, 0);
+        StringBuilder empty = new StringBuilder();
+        int[] headersEnd = new int[] {-1};
+        headers.onRowsWritten(count -> headersEnd[0] = empty.length());
+        renderer.render(headers, removeRedundant, empty);
+        int trailer = empty.length() - headersEnd[0];
+        int rows = -1;
+        for (int count = 0; count < rowEnds.length && rowEnds[count] >= 0; count++) {
+            if (rowEnds[count] + trailer <= this.maxLength) {
+                rows = count;
+            }
+        }
+        if (headersEnd[0] < 0 || rows < 0) {
+            return;
+        }
+        out.append(rendered.text, 0, rowEnds[rows]).append(empty, headersEnd[0], empty.length());
+    }
+
+    /**
+     * Thrown by BoundedOutput and CappedOutput to stop the renderer once the limit is reached.
+     */
+    private static final class LimitReached extends IOException {
+        private static final long serialVersionUID = 1L;
+
+        LimitReached() {
+            super("Output limit reached");
+        }
+
+        @Override
+        public synchronized Throwable fillInStackTrace() {
+            // only used to unwind the renderer, so the stack trace is never needed
+            return this;
+        }
+    }
+
+    /**
+     * Collects the output, up to the limit, so it can be cut at the end of a row.
+     */
+    private static final class CappedOutput implements Appendable {
+        private final StringBuilder text = new StringBuilder();
+        private final int limit;
+
+        CappedOutput(int maxLength) {
+            this.limit = maxLength;
+        }
+
+        int length() {
+            return this.text.length();
+        }
+
+        @Override
+        public Appendable append(CharSequence value) throws IOException {
+            CharSequence checked = value == null ? "null" : value;
+            return this.append(checked, 0, checked.length());
+        }
+
+        @Override
+        public Appendable append(CharSequence value, int start, int end) throws IOException {
+            // checked before copying, so a huge append is never buffered
+            if (this.text.length() + (end - start) > this.limit) {
+                throw new LimitReached();
+            }
+            this.text.append(value == null ? "null" : value, start, end);
+            return this;
+        }
+
+        @Override
+        public Appendable append(char ch) throws IOException {
+            if (this.text.length() + 1 > this.limit) {
+                throw new LimitReached();
+            }
+            this.text.append(ch);
+            return this;
+        }
+    }
+
+    /**
+     * Passes whole lines through, until a line would go over the limit. The line being built is held back,
+     * so the output never ends part way through a line. Lines past the safe length are held back as well,
+     * since they are dropped again when the limit is reached, to make room for the truncation marker.
+     */
+    private static final class BoundedOutput implements Appendable {
+        private final Appendable out;
+        private final int limit;
+        private final int safeLength;
+        private final StringBuilder line = new StringBuilder();
+        private final StringBuilder pending = new StringBuilder();
+        private int written = 0;
+
+        BoundedOutput(Appendable output, int maxLength, int safe) {
+            this.out = output;
+            this.limit = maxLength;
+            this.safeLength = safe;
+        }
+
+        @Override
+        public Appendable append(CharSequence text) throws IOException {
+            CharSequence value = text == null ? "null" : text;
+            return this.append(value, 0, value.length());
+        }
+
+        @Override
+        public Appendable append(CharSequence text, int start, int end) throws IOException {
+            CharSequence value = text == null ? "null" : text;
+            int lineStart = start;
+            for (int idx = start; idx < end; idx++) {
+                if (value.charAt(idx) == '\n') {
+                    this.hold(value, lineStart, idx + 1);
+                    this.commit();
+                    lineStart = idx + 1;
+                }
+            }
+            this.hold(value, lineStart, end);
+            return this;
+        }
+
+        @Override
+        public Appendable append(char ch) throws IOException {
+            this.line.append(ch);
+            this.check();
+            if (ch == '\n') {
+                this.commit();
+            }
+            return this;
+        }
+
+        private void hold(CharSequence text, int start, int end) throws IOException {
+            // checked before copying, so a huge append is never buffered
+            if (this.written + this.line.length() + (end - start) > this.limit) {
+                throw new LimitReached();
+            }
+            this.line.append(text, start, end);
+        }
+
+        private void check() throws LimitReached {
+            if (this.written + this.line.length() > this.limit) {
+                throw new LimitReached();
+            }
+        }
+
+        private void commit() throws IOException {
+            this.written += this.line.length();
+            if (this.pending.length() == 0 && this.written <= this.safeLength) {
+                this.out.append(this.line);
+            } else {
+                this.pending.append(this.line);
+            }
+            this.line.setLength(0);
+        }
+
+        void finish() throws IOException {
+            this.commit();
+            this.out.append(this.pending);
+        }
+    }
+}
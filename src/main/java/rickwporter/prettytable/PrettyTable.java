@@ -1,14 +1,34 @@
 package rickwporter.prettytable;
 
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
-import java.util.regex.Pattern;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicLong;
+
+import rickwporter.prettytable.RenderStats.Phase;
 
 
 public final class PrettyTable {
-    private static final Pattern NEWLINE = Pattern.compile("\\R");
+    // smallest table (in rows) where sorting and width scans are split across threads
+    static final int PARALLEL_THRESHOLD = 8192;
+    private static final int TASKS_PER_THREAD = 4;
+    // table versions are taken from one counter, so a change anywhere in a nested table gives a newer version
+    private static final AtomicLong VERSIONS = new AtomicLong();
 
     public enum HorizontalAlign {
         CENTER("text-align:center"),
@@ -31,22 +51,189 @@ public final class PrettyTable {
         JSON,
     }
 
+    public enum ColumnType {
+        OBJECT,
+        INT,
+        LONG,
+        DOUBLE,
+        STRING,
+    }
+
     private List<String> headers = new ArrayList<>();
     private List<List<Object>> rows = new ArrayList<>();
     private List<HorizontalAlign> hAligns = new ArrayList<>();
+    private ColumnWidths widths = new ColumnWidths();
+    private ForkJoinPool pool = null;
+    private boolean ownsPool = false;
+    private Map<Integer, Comparator<Object>> comparators = new HashMap<>();
     private HorizontalAlign defaultHorizontal = HorizontalAlign.CENTER;
     private OutputFormat defaultOutput = OutputFormat.TEXT;
+    private long version = VERSIONS.incrementAndGet();
+    private boolean versionRead = false;
+    private OutputCache nestedCache = null;
+    private OutputCache outputCache = null;
+    private RowTextCache textCache = null;
+    // immutable once compiled, so renders on other threads can share it without locking
+    private TextLayout textLayout = null;
+    private final OutputLimits limits = new OutputLimits();
 
     public PrettyTable(String... hdrs) {
         this.headers.addAll(Arrays.asList(hdrs));
     }
 
+    public static PrettyTable fromCsv(Path path) throws IOException {
+        // the file is mapped rather than read, and each cell is only decoded when it is used
+        MappedCsvRows csvRows = new MappedCsvRows(path);
+        PrettyTable table = new PrettyTable(csvRows.getHeaders().toArray(new String[0]));
+        table.rows = csvRows;
+        table.widths.invalidate();
+        return table;
+    }
+
     public List<String> getHeaders() {
         return this.headers;
     }
 
-     public void addRow(Object... row) {
+    public void addRow(Object... row) {
         this.rows.add(Arrays.asList(row));
+        this.rowModified(this.rows.size() - 1);
+        if (this.widths.isValid()) {
+            // typed columns may have converted the cells, so the row is measured as stored
+            this.widths.add(this.rows.get(this.rows.size() - 1));
+        }
+    }
+
+    public int addRows(int count) {
+        // empty rows, added in one step, for the cells to be filled in with setCell(); returns the first index
+        int first = this.rows.size();
+        if (this.rows instanceof ColumnarRows) {
+            ((ColumnarRows) this.rows).addRows(count);
+        } else {
+            int columns = this.headers.isEmpty() && this.rows.isEmpty() ? 0 : this.getMaxColumns();
+            for (int rIdx = 0; rIdx < count; rIdx++) {
+                this.rows.add(Arrays.asList(new Object[columns]));
+            }
+        }
+        this.bumpVersion();
+        if (this.textCache != null) {
+            for (int rIdx = first; rIdx < first + count; rIdx++) {
+                this.textCache.rowChanged(rIdx);
+            }
+        }
+        return first;
+    }
+
+    public void setRow(int rowIndex, Object... row) {
+        List<Object> oldRow = this.rows.set(rowIndex, Arrays.asList(row));
+        this.rowModified(rowIndex);
+        if (!this.widths.isValid()) {
+            return;
+        }
+        if (this.widths.mayBeWidest(oldRow)) {
+            this.widths.invalidate();
+            return;
+        }
+        this.widths.add(this.rows.get(rowIndex));
+    }
+
+    public void setCell(int rowIndex, int columnIndex, Object value) {
+        List<Object> row = this.rows.get(rowIndex);
+        Object oldCell = row.set(columnIndex, value);
+        this.rowModified(rowIndex);
+        this.replaceWidth(columnIndex, oldCell, row.get(columnIndex));
+    }
+
+    private void replaceWidth(int columnIndex, Object oldCell, Object newCell) {
+        if (oldCell instanceof PrettyTable || newCell instanceof PrettyTable) {
+            this.widths.invalidate();
+            return;
+        }
+        this.widths.replace(columnIndex, getCellWidth(oldCell), getCellWidth(newCell));
+    }
+
+    public void setCell(int rowIndex, int columnIndex, int value) {
+        ColumnarRows columnar = this.numberColumns(columnIndex);
+        if (columnar == null) {
+            this.setCell(rowIndex, columnIndex, (Object) value);
+            return;
+        }
+        // the value is stored without boxing, when the column holds numbers
+        int oldWidth = columnar.getTextWidth(rowIndex, columnIndex);
+        columnar.setInt(rowIndex, columnIndex, value);
+        this.replaceWidth(columnar, rowIndex, columnIndex, oldWidth);
+    }
+
+    public void setCell(int rowIndex, int columnIndex, long value) {
+        ColumnarRows columnar = this.numberColumns(columnIndex);
+        if (columnar == null) {
+            this.setCell(rowIndex, columnIndex, (Object) value);
+            return;
+        }
+        int oldWidth = columnar.getTextWidth(rowIndex, columnIndex);
+        columnar.setLong(rowIndex, columnIndex, value);
+        this.replaceWidth(columnar, rowIndex, columnIndex, oldWidth);
+    }
+
+    public void setCell(int rowIndex, int columnIndex, double value) {
+        ColumnarRows columnar = this.numberColumns(columnIndex);
+        if (columnar == null) {
+            this.setCell(rowIndex, columnIndex, (Object) value);
+            return;
+        }
+        int oldWidth = columnar.getTextWidth(rowIndex, columnIndex);
+        columnar.setDouble(rowIndex, columnIndex, value);
+        this.replaceWidth(columnar, rowIndex, columnIndex, oldWidth);
+    }
+
+    private ColumnarRows numberColumns(int columnIndex) {
+        // the typed rows, when the column holds numbers that can be stored and measured without boxing them
+        if (this.rows instanceof ColumnarRows && ((ColumnarRows) this.rows).isNumeric(columnIndex)) {
+            return (ColumnarRows) this.rows;
+        }
+        return null;
+    }
+
+    private void replaceWidth(ColumnarRows columnar, int rowIndex, int columnIndex, int oldWidth) {
+        this.rowModified(rowIndex);
+        this.widths.replace(columnIndex, oldWidth, columnar.getTextWidth(rowIndex, columnIndex));
+    }
+
+    public void updateRow(int rowIndex, Object... row) {
+        // only the cells that differ are replaced, so a row that has not changed is not rendered again
+        List<Object> oldRow = this.rows.get(rowIndex);
+        if (oldRow.size() != row.length) {
+            this.setRow(rowIndex, row);
+            return;
+        }
+        for (int cIdx = 0; cIdx < row.length; cIdx++) {
+            if (!Objects.equals(oldRow.get(cIdx), row[cIdx])) {
+                this.setCell(rowIndex, cIdx, row[cIdx]);
+            }
+        }
+    }
+
+    public void setColumnTypes(ColumnType... types) {
+        // moves the rows into typed column storage, or back to plain rows when no types are given
+        List<List<Object>> converted;
+        if (types.length == 0) {
+            converted = new ArrayList<>();
+            for (List<Object> row : this.rows) {
+                converted.add(Arrays.asList(row.toArray()));
+            }
+        } else {
+            converted = new ColumnarRows(types);
+            converted.addAll(this.rows);
+        }
+        this.rows = converted;
+        this.widths.invalidate();
+        this.modified();
+    }
+
+    public List<ColumnType> getColumnTypes() {
+        if (this.rows instanceof ColumnarRows) {
+            return ((ColumnarRows) this.rows).getColumnTypes();
+        }
+        return new ArrayList<>();
     }
 
     public int getRowCount() {
@@ -57,16 +244,37 @@ public final class PrettyTable {
         if (this.rows.size() <= rowIndex) {
             return null;
         }
-        return this.rows.get(rowIndex);
+        // changes made through the row, however much later, are passed on to this table
+        return new TrackedRows.Row(this, this.rows.get(rowIndex));
     }
 
     public List<List<Object>> getRows() {
+        return new TrackedRows(this, this.rows);
+    }
+
+    // the rows themselves, for the renderers
+    List<List<Object>> readRows() {
         return this.rows;
     }
 
+    void rowsChanged() {
+        // rows were added, removed or replaced through the list returned by getRows()
+        this.widths.invalidate();
+        this.modified();
+    }
+
+    void cellChanged(int columnIndex, Object oldCell, Object newCell) {
+        // a cell was replaced through a row returned by getRow() or getRows()
+        this.modified();
+        this.replaceWidth(columnIndex, oldCell, newCell);
+    }
+
     public Object getCell(int rowIndex, int columnIndex) {
-        List<Object> row = this.getRow(rowIndex);
-        if (row == null || row.size() <= columnIndex) {
+        if (this.rows.size() <= rowIndex) {
+            return null;
+        }
+        List<Object> row = this.rows.get(rowIndex);
+        if (row.size() <= columnIndex) {
             return null;
         }
         return row.get(columnIndex);
@@ -81,11 +289,13 @@ public final class PrettyTable {
             this.hAligns.add(this.defaultHorizontal);
         }
         this.hAligns.set(column, fmt);
+        this.modified();
     }
 
     public void setHorizAligns(HorizontalAlign... fmts) {
         this.hAligns.clear();
         this.hAligns.addAll(Arrays.asList(fmts));
+        this.modified();
     }
 
     public List<HorizontalAlign> getHorizAligns() {
@@ -94,56 +304,331 @@ public final class PrettyTable {
 
     public void setOutputFormat(OutputFormat format) {
         this.defaultOutput = format;
+        // parents render this table in its default format, so their output changes
+        this.modified();
     }
 
     public OutputFormat getDefaultOutput() {
         return this.defaultOutput;
     }
 
-    public int getMaxWidthForColumn(int column) {
-        int maxWidth = column >= this.headers.size() ? 0 : this.headers.get(column).length();
-        for (List<Object> row : this.rows) {
-            String cellText = row.get(column).toString();
-            List<String> cellLines = Arrays.asList(NEWLINE.split(cellText));
-            int cellWidth = cellLines.stream().map(String::length).max(Integer::compare).get();
-            if (cellWidth > maxWidth) {
-                maxWidth = cellWidth;
+    static boolean isLineBreak(char ch) {
+        // same line breaks as matched by '\R'
+        return ch == '\n' || ch == '\013' || ch == '\f' || ch == '\r'
+            || ch == '\u0085' || ch == '\u2028' || ch == '\u2029';
+    }
+
+    static String getCellText(Object cell) {
+        // empty cells are rendered as blanks (or null in JSON)
+        if (cell instanceof PrettyTable) {
+            Phase previous = RenderListeners.enter(Phase.NESTED);
+            String text = ((PrettyTable) cell).getNestedText();
+            RenderListeners.exit(previous);
+            return text;
+        }
+        return cell == null ? "" : cell.toString();
+    }
+
+    long getVersion() {
+        // newer whenever this table, or any table nested in it, changes
+        long latest = this.version;
+        this.versionRead = true;
+        ColumnWidths indexed = this.getWidthIndex();
+        for (int cIdx = 0; cIdx < indexed.nestedColumns(); cIdx++) {
+            for (PrettyTable nested : indexed.getNested(cIdx)) {
+                latest = Math.max(latest, nested.getVersion());
             }
         }
-        return maxWidth;
+        return latest;
     }
 
-    private void sortRows(List<Integer> indices) {
-        Collections.sort(this.rows, (row1, row2) -> {
-            for (Integer idx : indices) {
-                String s1 = row1.get(idx).toString();
-                String s2 = row2.get(idx).toString();
-                int value = 0;
-                try {
-                    Float f1 = Float.parseFloat(s1);
-                    Float f2 = Float.parseFloat(s2);
-                    value = f1.compareTo(f2);
-                } catch (NumberFormatException ex) {
-                    value = s1.compareTo(s2);
+    private void bumpVersion() {
+        // a version nobody has read yet is already newer than anything cached, so it is only taken once
+        if (this.versionRead) {
+            this.version = VERSIONS.incrementAndGet();
+            this.versionRead = false;
+        }
+    }
+
+    private void modified() {
+        this.bumpVersion();
+        if (this.textCache != null) {
+            this.textCache.invalidate();
+        }
+    }
+
+    private void rowModified(int rowIndex) {
+        // only the one row has to be rendered again
+        this.bumpVersion();
+        if (this.textCache != null) {
+            this.textCache.rowChanged(rowIndex);
+        }
+    }
+
+    String getNestedText() {
+        // a nested table is rendered once per change, no matter how often its parents measure or render it
+        if (this.nestedCache == null) {
+            this.nestedCache = new OutputCache();
+        }
+        String text = this.nestedCache.get(this, this.getVersion(), this.defaultOutput, true);
+        if (text == null) {
+            text = this.toString();
+            this.nestedCache.put(this.defaultOutput, true, text);
+        }
+        return text;
+    }
+
+    static int getCellWidth(Object cell) {
+        return getTextWidth(getCellText(cell));
+    }
+
+    static int getTextWidth(String text) {
+        // widest line of the text, in display columns
+        int maxWidth = 0;
+        int lineStart = 0;
+        int length = text.length();
+        for (int idx = 0; idx < length; idx++) {
+            char ch = text.charAt(idx);
+            if (isLineBreak(ch)) {
+                maxWidth = Math.max(maxWidth, DisplayWidth.of(text, lineStart, idx));
+                if (ch == '\r' && idx + 1 < length && text.charAt(idx + 1) == '\n') {
+                    idx++;
                 }
-                if (value != 0) {
-                    return value;
+                lineStart = idx + 1;
+            }
+        }
+        return Math.max(maxWidth, DisplayWidth.of(text, lineStart, length));
+    }
+
+    static int getTextWidth(String text, int cap) {
+        // widest line of the text, or the cap as soon as a line is found to be at least that wide
+        int maxWidth = 0;
+        int lineWidth = 0;
+        int length = text.length();
+        for (int idx = 0; idx < length; idx++) {
+            char ch = text.charAt(idx);
+            if (isLineBreak(ch)) {
+                if (ch == '\r' && idx + 1 < length && text.charAt(idx + 1) == '\n') {
+                    idx++;
                 }
+                lineWidth = 0;
+                continue;
+            }
+            int codePoint = Character.codePointAt(text, idx);
+            idx += Character.charCount(codePoint) - 1;
+            lineWidth += DisplayWidth.of(codePoint);
+            if (lineWidth >= cap) {
+                return cap;
+            }
+            maxWidth = Math.max(maxWidth, lineWidth);
+        }
+        return maxWidth;
+    }
+
+    // width of the header and the (non-nested) row cells for a column
+    private ColumnWidths getWidthIndex() {
+        if (!this.widths.isValid()) {
+            Phase previous = RenderListeners.enter(Phase.WIDTHS);
+            this.widths.rebuild(this.rows, this.pool);
+            RenderListeners.exit(previous);
+        }
+        return this.widths;
+    }
+
+    int getIndexedWidth(int column) {
+        this.getWidthIndex();
+        int maxWidth = column >= this.headers.size() ? 0 : DisplayWidth.of(this.headers.get(column));
+        return Math.max(maxWidth, this.limits.capWidth(this.widths.getWidth(column)));
+    }
+
+    public int getMaxWidthForColumn(int column) {
+        int maxWidth = this.getIndexedWidth(column);
+        for (PrettyTable nested : this.widths.getNested(column)) {
+            // nested tables are never truncated, so they are not capped by the cell width limit
+            maxWidth = Math.max(maxWidth, getCellWidth(nested));
+        }
+        return maxWidth;
+    }
+
+    public void setMaxRows(int maxRows) {
+        // NOTE: zero (the default) means no limit, and the text output says how many rows were left out
+        this.limits.setMaxRows(maxRows);
+        this.modified();
+    }
+
+    public int getMaxRows() {
+        return this.limits.getMaxRows();
+    }
+
+    public void setMaxCellWidth(int maxWidth) {
+        // lines of a cell wider than this are truncated with "..." or wrapped, depending on the cell overflow
+        this.limits.setMaxCellWidth(maxWidth);
+        this.widths.setCap(this.limits.getMaxCellWidth());
+        this.modified();
+    }
+
+    public int getMaxCellWidth() {
+        return this.limits.getMaxCellWidth();
+    }
+
+    public void setCellOverflow(CellOverflow overflow) {
+        this.limits.setOverflow(overflow);
+        this.modified();
+    }
+
+    public CellOverflow getCellOverflow() {
+        return this.limits.getOverflow();
+    }
+
+    public void setMaxOutputLength(int maxLength) {
+        // rendering stops at the last whole line that fits, and a line saying the output was truncated is added
+        this.limits.setMaxLength(maxLength);
+        this.modified();
+    }
+
+    public int getMaxOutputLength() {
+        return this.limits.getMaxLength();
+    }
+
+    String limitText(String text) {
+        return this.limits.limitText(text);
+    }
+
+    static int getParallelGrain(int count, ForkJoinPool forkJoinPool) {
+        // rows per task, so each thread gets a few tasks without splitting small tables too finely
+        return Math.max(PARALLEL_THRESHOLD / 2, count / (forkJoinPool.getParallelism() * TASKS_PER_THREAD));
+    }
+
+    public void setParallelism(int parallelism) {
+        // NOTE: tables smaller than PARALLEL_THRESHOLD rows are always sorted and scanned sequentially
+        if (this.ownsPool && this.pool.getParallelism() == parallelism) {
+            return;
+        }
+        this.replacePool(parallelism > 1 ? new ForkJoinPool(parallelism) : null, true);
+    }
+
+    public void setParallelism(ForkJoinPool forkJoinPool) {
+        // NOTE: the caller still owns the pool, so it is never shut down by the table
+        this.replacePool(forkJoinPool, false);
+    }
+
+    private void replacePool(ForkJoinPool forkJoinPool, boolean owned) {
+        // a pool the table made for itself is shut down once replaced, so its threads do not pile up
+        if (this.ownsPool && this.pool != forkJoinPool) {
+            this.pool.shutdown();
+        }
+        this.pool = forkJoinPool;
+        this.ownsPool = owned && forkJoinPool != null;
+    }
+
+    ForkJoinPool getPool() {
+        return this.pool;
+    }
+
+    public int getParallelism() {
+        return this.pool == null ? 1 : this.pool.getParallelism();
+    }
+
+    public void setColumnComparator(int column, Comparator<Object> comparator) {
+        if (comparator == null) {
+            this.comparators.remove(column);
+        } else {
+            this.comparators.put(column, comparator);
+        }
+    }
+
+    public Map<Integer, Comparator<Object>> getColumnComparators() {
+        return this.comparators;
+    }
+
+    private void checkSortIndices(List<Integer> indices) {
+        int columns = Math.max(this.headers.size(), this.rows.get(0).size());
+        for (Integer idx : indices) {
+            if (idx < 0 || idx >= columns) {
+                throw new ArrayIndexOutOfBoundsException(idx);
             }
-            return 0;
-        });
+        }
+    }
+
+    private void sortRows(List<Integer> indices) {
+        if (this.rows.isEmpty()) {
+            return;
+        }
+        this.checkSortIndices(indices);
+        // the keys are extracted once per row, so the comparisons never convert or parse the cells
+        long started = RenderListeners.sortStarted();
+        RowSorter sorter = new RowSorter(this.rows, indices, this.comparators, this.pool);
+        int[] order = sorter.sortedOrder(this.rows.size());
+        this.modified();
+        if (this.rows instanceof ReorderableRows) {
+            ((ReorderableRows) this.rows).reorder(order);
+        } else {
+            List<List<Object>> unsorted = new ArrayList<>(this.rows);
+            for (int rIdx = 0; rIdx < order.length; rIdx++) {
+                this.rows.set(rIdx, unsorted.get(order[rIdx]));
+            }
+        }
+        RenderListeners.sorted(this, order.length, started);
     }
 
     public void sortByHeader(String... order) {
+        this.sortRows(this.headerIndices(order));
+    }
+
+    public void sortByIndex(Integer... indices) {
+        this.sortRows(Arrays.asList(indices));
+    }
+
+    private List<Integer> headerIndices(String... order) {
         List<Integer> indices = new ArrayList<>();
         for (String hdr : order) {
             indices.add(this.headers.indexOf(hdr));
         }
-        this.sortRows(indices);
+        return indices;
     }
 
-    public void sortByIndex(Integer... indices) {
-        this.sortRows(Arrays.asList(indices));
+    public PrettyTable topK(int limit, String... order) {
+        return this.topRows(limit, this.headerIndices(order));
+    }
+
+    public PrettyTable topKByIndex(int limit, Integer... indices) {
+        return this.topRows(limit, Arrays.asList(indices));
+    }
+
+    public PrettyTable limit(int limit) {
+        return this.topRows(limit, new ArrayList<>());
+    }
+
+    private PrettyTable topRows(int limit, List<Integer> indices) {
+        // the first rows in sorted order, as a new table, without sorting (or changing) this one
+        if (limit < 0) {
+            throw new IllegalArgumentException("Limit " + limit + " is negative");
+        }
+        PrettyTable result = new PrettyTable(this.headers.toArray(new String[0]));
+        result.hAligns.addAll(this.hAligns);
+        result.comparators.putAll(this.comparators);
+        result.defaultOutput = this.defaultOutput;
+        if (this.rows instanceof ColumnarRows) {
+            result.setColumnTypes(((ColumnarRows) this.rows).getColumnTypes().toArray(new ColumnType[0]));
+        }
+        if (this.rows.isEmpty()) {
+            return result;
+        }
+        this.checkSortIndices(indices);
+        int count = this.rows.size();
+        int[] order;
+        if (indices.isEmpty()) {
+            order = new int[Math.min(count, limit)];
+            for (int rIdx = 0; rIdx < order.length; rIdx++) {
+                order[rIdx] = rIdx;
+            }
+        } else {
+            order = new RowSorter(this.rows, indices, this.comparators, this.pool).topOrder(count, limit);
+        }
+        for (int rIdx : order) {
+            result.addRow(this.rows.get(rIdx).toArray());
+        }
+        return result;
     }
 
     public int getMaxColumns() {
@@ -159,6 +644,16 @@ public final class PrettyTable {
         return maxWidths;
     }
 
+    public RenderPlan prepare() {
+        // only the rows within the row limit (if any) are prepared
+        return new RenderPlan(this, 0, this.limits.shownRows(this.rows.size()));
+    }
+
+    public RenderPlan prepare(int fromRow, int toRow) {
+        // only the rows in the window are converted, but the widths are those of the whole table
+        return new RenderPlan(this, fromRow, toRow);
+    }
+
     String toText(boolean removeRedundant) {
         return formattedString(OutputFormat.TEXT, removeRedundant);
     }
@@ -180,26 +675,204 @@ public final class PrettyTable {
     }
 
     public String formattedString(OutputFormat format, boolean removeRedundant) {
-        TableRenderInterface renderer = null;
-        switch (format) {
-        case TEXT:
-            renderer = new TextTableRender();
-            break;
-        case CSV:
-            renderer = new CsvTableRender();
-            break;
-        case JSON:
-            renderer = new JsonTableRender();
-            break;
-        case HTML:
-            renderer = new HtmlTableRender();
-            break;
-        }
-        return render(renderer, removeRedundant);
+        RenderStats stats = RenderListeners.begin(this, format.name(), removeRedundant);
+        if (stats == null) {
+            return this.cachedFormat(format, removeRedundant, null);
+        }
+        try {
+            String output = this.cachedFormat(format, removeRedundant, stats);
+            stats.addOutput(output.length());
+            return output;
+        } finally {
+            RenderListeners.end(stats);
+        }
+    }
+
+    private String cachedFormat(OutputFormat format, boolean removeRedundant, RenderStats stats) {
+        if (this.outputCache == null) {
+            return this.renderFormat(format, removeRedundant);
+        }
+        String output = this.outputCache.get(this, this.getVersion(), format, removeRedundant);
+        if (output == null) {
+            output = this.renderFormat(format, removeRedundant);
+            this.outputCache.put(format, removeRedundant, output);
+        } else if (stats != null) {
+            stats.setCacheHit();
+        }
+        return output;
+    }
+
+    private String renderFormat(OutputFormat format, boolean removeRedundant) {
+        if (format == OutputFormat.TEXT && this.textCache != null && !this.limits.isSet()) {
+            this.textCache.refresh(this, removeRedundant);
+            return this.textCache.getText();
+        }
+        return this.renderString(rendererFor(format), removeRedundant);
+    }
+
+    private String renderString(TableRenderInterface renderer, boolean removeRedundant) {
+        if (!this.limits.isSet()) {
+            return renderer.render(this, removeRedundant);
+        }
+        StringBuilder result = RenderBuffers.acquire();
+        try {
+            this.limits.render(this, renderer, removeRedundant, result);
+            return result.toString();
+        } catch (IOException ex) {
+            // a StringBuilder does not throw, so this is a renderer failing, which is passed on rather than hidden
+            throw new UncheckedIOException(ex);
+        } finally {
+            RenderBuffers.recycle(result);
+        }
+    }
+
+    private void renderTo(TableRenderInterface renderer, boolean removeRedundant, Appendable out) throws IOException {
+        if (this.limits.isSet()) {
+            this.limits.render(this, renderer, removeRedundant, out);
+        } else {
+            renderer.render(this, removeRedundant, out);
+        }
+    }
+
+    TextLayout getTextLayout(int[] columnWidths, List<HorizontalAlign> aligns) {
+        // compiled again only when a width or an alignment changed since the last text render
+        TextLayout layout = this.textLayout;
+        if (layout == null || !layout.matches(columnWidths, aligns)) {
+            layout = new TextLayout(columnWidths, aligns);
+            this.textLayout = layout;
+        }
+        return layout;
+    }
+
+    public void setIncrementalRendering(boolean enabled) {
+        // NOTE: keeps the rendered lines of every row, so the text output only renders the rows that changed
+        this.textCache = enabled ? new RowTextCache() : null;
+    }
+
+    public boolean isIncrementalRendering() {
+        return this.textCache != null;
+    }
+
+    public List<TextChange> getTextChanges(boolean removeRedundant) {
+        // the lines of the text output that changed since it was last rendered (all of them, the first time)
+        if (this.textCache == null) {
+            this.setIncrementalRendering(true);
+        }
+        return this.textCache.refresh(this, removeRedundant);
+    }
+
+    public void setOutputCaching(boolean enabled) {
+        // NOTE: the cached output is dropped whenever the table (or a nested table) changes
+        this.outputCache = enabled ? new OutputCache() : null;
+    }
+
+    public boolean isOutputCaching() {
+        return this.outputCache != null;
+    }
+
+    public long getCacheHits() {
+        return this.outputCache == null ? 0 : this.outputCache.getHits();
+    }
+
+    public long getCacheMisses() {
+        return this.outputCache == null ? 0 : this.outputCache.getMisses();
+    }
+
+    public String formattedString(OutputFormat format, boolean removeRedundant, int fromRow, int toRow) {
+        return this.prepare(fromRow, toRow).formattedString(format, removeRedundant);
+    }
+
+    public String formattedString(String formatName, boolean removeRedundant) {
+        // any format known to TableRenderers, including the ones added by services
+        return this.render(TableRenderers.get(formatName), formatName, removeRedundant);
     }
 
     public String render(TableRenderInterface renderer, boolean removeRedundant) {
-        return renderer.render(this, removeRedundant);
+        return this.render(renderer, renderer.getClass().getSimpleName(), removeRedundant);
+    }
+
+    private String render(TableRenderInterface renderer, String formatName, boolean removeRedundant) {
+        RenderStats stats = RenderListeners.begin(this, formatName, removeRedundant);
+        if (stats == null) {
+            return this.renderString(renderer, removeRedundant);
+        }
+        try {
+            String output = this.renderString(renderer, removeRedundant);
+            stats.addOutput(output.length());
+            return output;
+        } finally {
+            RenderListeners.end(stats);
+        }
+    }
+
+    public void render(TableRenderInterface renderer, boolean removeRedundant, Appendable out) throws IOException {
+        this.render(renderer, renderer.getClass().getSimpleName(), removeRedundant, out);
+    }
+
+    private void render(TableRenderInterface renderer, String formatName, boolean removeRedundant, Appendable out)
+        throws IOException {
+        RenderStats stats = RenderListeners.begin(this, formatName, removeRedundant);
+        if (stats == null) {
+            this.renderTo(renderer, removeRedundant, out);
+            return;
+        }
+        try {
+            this.renderTo(renderer, removeRedundant, stats.counting(out));
+        } finally {
+            RenderListeners.end(stats);
+        }
+    }
+
+    public void writeTo(Writer writer, OutputFormat format) throws IOException {
+        this.writeTo(writer, format, true);
+    }
+
+    public void writeTo(Writer writer, OutputFormat format, boolean removeRedundant) throws IOException {
+        // rows are appended to the writer as they are rendered, so the full output is never held in memory
+        this.render(rendererFor(format), format.name(), removeRedundant, writer);
+        writer.flush();
+    }
+
+    public void writeTo(OutputStream stream, OutputFormat format) throws IOException {
+        this.writeTo(stream, format, true);
+    }
+
+    public void writeTo(OutputStream stream, OutputFormat format, boolean removeRedundant) throws IOException {
+        // NOTE: the writer is flushed, but not closed, so the caller still owns the stream
+        Writer writer = new BufferedWriter(new OutputStreamWriter(stream, StandardCharsets.UTF_8));
+        this.writeTo(writer, format, removeRedundant);
+    }
+
+    public void writeTo(WritableByteChannel channel, OutputFormat format) throws IOException {
+        this.writeTo(channel, format, true);
+    }
+
+    public void writeTo(WritableByteChannel channel, OutputFormat format, boolean removeRedundant)
+        throws IOException {
+        // encoded as UTF-8 into a small buffer kept for the thread, which is written out whenever it fills up
+        ByteBuffer buffer = RenderBuffers.acquireBytes();
+        try {
+            Utf8Output output = new Utf8Output(buffer, channel);
+            this.render(rendererFor(format), format.name(), removeRedundant, output);
+            output.flush();
+        } finally {
+            RenderBuffers.recycleBytes(buffer);
+        }
+    }
+
+    public void writeTo(ByteBuffer buffer, OutputFormat format) throws IOException {
+        this.writeTo(buffer, format, true);
+    }
+
+    public void writeTo(ByteBuffer buffer, OutputFormat format, boolean removeRedundant) throws IOException {
+        // NOTE: throws a BufferOverflowException when the output does not fit in the rest of the buffer
+        Utf8Output output = new Utf8Output(buffer, null);
+        this.render(rendererFor(format), format.name(), removeRedundant, output);
+        output.flush();
+    }
+
+    static TableRenderInterface rendererFor(OutputFormat format) {
+        return TableRenderers.get(format);
     }
 
     public String toString() {
@@ -0,0 +1,69 @@
+package rickwporter.prettytable;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Per-thread pool of the buffers that renders returning a String are written into, so a render reuses a
+ * buffer already grown to the size of earlier output, instead of growing a new one from nothing. A few are
+ * kept per thread, since a nested table is rendered while its parent still holds a buffer. Buffers that grew
+ * past MAX_RETAINED chars are dropped instead of kept, so one huge render does not pin its memory forever.
+ * The byte buffer that a render to a channel is encoded into is reused the same way.
+ */
+final class RenderBuffers {
+    static final int INITIAL_CAPACITY = 4096;
+    static final int MAX_RETAINED = 1_048_576;
+    static final int CHANNEL_BUFFER_SIZE = 8192;
+    private static final int MAX_POOLED = 4;
+    // an estimate is only a guess, so it never grows a buffer past this up front
+    private static final int MAX_RESERVED = Integer.MAX_VALUE / 4;
+    private static final ThreadLocal<RenderBuffers> POOL = ThreadLocal.withInitial(RenderBuffers::new);
+
+    private final StringBuilder[] free = new StringBuilder[MAX_POOLED];
+    private int count = 0;
+    // a heap buffer, since a direct one costs more to allocate and is only freed by a GC
+    private ByteBuffer channelBuffer = null;
+
+    private RenderBuffers() {
+    }
+
+    static StringBuilder acquire() {
+        RenderBuffers pool = POOL.get();
+        if (pool.count == 0) {
+            return new StringBuilder(INITIAL_CAPACITY);
+        }
+        StringBuilder buffer = pool.free[--pool.count];
+        pool.free[pool.count] = null;
+        return buffer;
+    }
+
+    static void recycle(StringBuilder buffer) {
+        if (buffer.capacity() > MAX_RETAINED) {
+            return;
+        }
+        buffer.setLength(0);
+        RenderBuffers pool = POOL.get();
+        if (pool.count < MAX_POOLED) {
+            pool.free[pool.count++] = buffer;
+        }
+    }
+
+    static ByteBuffer acquireBytes() {
+        RenderBuffers pool = POOL.get();
+        ByteBuffer buffer = pool.channelBuffer;
+        pool.channelBuffer = null;
+        return buffer != null ? buffer : ByteBuffer.allocate(CHANNEL_BUFFER_SIZE);
+    }
+
+    static void recycleBytes(ByteBuffer buffer) {
+        buffer.clear();
+        POOL.get().channelBuffer = buffer;
+    }
+
+    static void reserve(Appendable out, long length) {
+        // grows a buffer once up front, rather than doubling it several times as the output is appended
+        if (out instanceof StringBuilder) {
+            StringBuilder buffer = (StringBuilder) out;
+            buffer.ensureCapacity((int) Math.min(buffer.length() + length, MAX_RESERVED));
+        }
+    }
+}
@@ -0,0 +1,12 @@
+package rickwporter.prettytable;
+
+/**
+ * Receives the measurements of each render (and sort), once it is added to RenderListeners. Listeners are
+ * called on the rendering thread, right after the render, so they should be quick.
+ */
+public interface RenderListener {
+    void rendered(RenderStats stats);
+
+    default void sorted(PrettyTable table, int rowCount, long nanos) {
+    }
+}
@@ -0,0 +1,113 @@
+package rickwporter.prettytable;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import rickwporter.prettytable.RenderStats.Phase;
+
+/**
+ * Registry of the listeners told about every render and sort. Until the first listener is added, the only
+ * cost to rendering is reading a flag; nothing is timed or allocated. The Flight Recorder events are added
+ * as one more listener, and the classes for them are only loaded when they are turned on.
+ */
+public final class RenderListeners {
+    private static final String FLIGHT_RECORDER_LISTENER = "rickwporter.prettytable.FlightRecorderListener";
+    private static final List<RenderListener> LISTENERS = new CopyOnWriteArrayList<>();
+    // the render of the current thread, with the renders of the tables around it (when nested) as its parents
+    private static final ThreadLocal<RenderStats> CURRENT = new ThreadLocal<>();
+    private static volatile boolean enabled = false;
+    private static RenderListener flightRecorder = null;
+
+    private RenderListeners() {
+    }
+
+    public static synchronized void add(RenderListener listener) {
+        LISTENERS.add(listener);
+        enabled = true;
+    }
+
+    public static synchronized void remove(RenderListener listener) {
+        LISTENERS.remove(listener);
+        enabled = !LISTENERS.isEmpty();
+    }
+
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    public static synchronized void setFlightRecording(boolean recording) {
+        // NOTE: events are only written while a recording is running, but renders are timed from now on
+        if (recording == (flightRecorder != null)) {
+            return;
+        }
+        if (!recording) {
+            remove(flightRecorder);
+            flightRecorder = null;
+            return;
+        }
+        try {
+            flightRecorder = (RenderListener) Class.forName(FLIGHT_RECORDER_LISTENER).getDeclaredConstructor()
+                .newInstance();
+        } catch (ReflectiveOperationException | LinkageError ex) {
+            throw new UnsupportedOperationException("Flight Recorder is not available", ex);
+        }
+        add(flightRecorder);
+    }
+
+    public static synchronized boolean isFlightRecording() {
+        return flightRecorder != null;
+    }
+
+    static RenderStats begin(PrettyTable table, String format, boolean removeRedundant) {
+        if (!enabled) {
+            return null;
+        }
+        RenderStats stats = new RenderStats(table, format, removeRedundant, CURRENT.get());
+        CURRENT.set(stats);
+        return stats;
+    }
+
+    static void end(RenderStats stats) {
+        if (stats == null) {
+            return;
+        }
+        stats.finish();
+        CURRENT.set(stats.getParent());
+        for (RenderListener listener : LISTENERS) {
+            listener.rendered(stats);
+        }
+    }
+
+    static Phase enter(Phase phase) {
+        // returns the phase to go back to, or null when nothing is being measured
+        if (!enabled) {
+            return null;
+        }
+        RenderStats stats = CURRENT.get();
+        return stats == null ? null : stats.switchTo(phase);
+    }
+
+    static void exit(Phase previous) {
+        if (previous == null) {
+            return;
+        }
+        RenderStats stats = CURRENT.get();
+        if (stats != null) {
+            stats.switchTo(previous);
+        }
+    }
+
+    static long sortStarted() {
+        return enabled ? System.nanoTime() : 0;
+    }
+
+    static void sorted(PrettyTable table, int rowCount, long started) {
+        if (started == 0) {
+            return;
+        }
+        long nanos = System.nanoTime() - started;
+        for (RenderListener listener : LISTENERS) {
+            listener.sorted(table, rowCount, nanos);
+        }
+    }
+}
@@ -0,0 +1,257 @@
+package rickwporter.prettytable;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.IntConsumer;
+
+import rickwporter.prettytable.PrettyTable.ColumnType;
+import rickwporter.prettytable.PrettyTable.HorizontalAlign;
+import rickwporter.prettytable.PrettyTable.OutputFormat;
+import rickwporter.prettytable.RenderStats.Phase;
+
+/**
+ * Snapshot of a PrettyTable prepared for rendering, where each cell is converted to a string (and split
+ * into lines) only once, no matter how many times or in how many formats it gets rendered.
+ */
+public final class RenderPlan {
+    private static final String[] EMPTY_LINES = new String[] {""};
+
+    private final PrettyTable table;
+    private final List<String> headers;
+    private final List<List<Object>> rows;
+    private final ColumnarRows columnar;
+    private final String[][] texts;
+    private final String[] previousText;
+    private final String[][][] lines;
+    private final List<HorizontalAlign> hAligns;
+    private final int maxColumns;
+    private final int[] indexedWidths;
+    private int[] widths;
+    private List<Integer> maxWidths;
+    // told each time the output holds a few more whole rows, for the output limits to cut it there
+    private IntConsumer rowsWritten = null;
+
+    RenderPlan(PrettyTable source) {
+        this(source, 0, source.readRows().size());
+    }
+
+    RenderPlan(PrettyTable source, int fromRow, int toRow) {
+        List<List<Object>> tableRows = source.readRows();
+        if (fromRow < 0 || fromRow > toRow || toRow > tableRows.size()) {
+            throw new IndexOutOfBoundsException("Rows " + fromRow + " to " + toRow + " of " + tableRows.size());
+        }
+        this.table = source;
+        this.headers = new ArrayList<>(source.getHeaders());
+        this.rows = new ArrayList<>(tableRows.subList(fromRow, toRow));
+        this.columnar = tableRows instanceof ColumnarRows ? (ColumnarRows) tableRows : null;
+        this.texts = new String[this.rows.size()][];
+        this.lines = new String[this.rows.size()][][];
+        Phase previous = RenderListeners.enter(Phase.TEXT);
+        for (int rIdx = 0; rIdx < this.rows.size(); rIdx++) {
+            this.texts[rIdx] = rowText(source, this.columnar, fromRow + rIdx);
+        }
+        // the row before the window is only needed to remove the redundant cells of the first row
+        this.previousText = fromRow > 0 ? rowText(source, this.columnar, fromRow - 1) : new String[0];
+        RenderListeners.exit(previous);
+        this.maxColumns = this.headers.isEmpty() && tableRows.isEmpty() ? 0 : source.getMaxColumns();
+        this.hAligns = new ArrayList<>(source.getHorizAligns());
+        for (int i = this.hAligns.size(); i <= this.maxColumns; i++) {
+            this.hAligns.add(source.getDefaultHorizAlign());
+        }
+        // a window of the table measures the nested tables of all rows, so the widths match between windows
+        boolean window = this.rows.size() != tableRows.size();
+        this.indexedWidths = new int[this.maxColumns];
+        for (int cIdx = 0; cIdx < this.maxColumns; cIdx++) {
+            this.indexedWidths[cIdx] = window ? source.getMaxWidthForColumn(cIdx) : source.getIndexedWidth(cIdx);
+        }
+    }
+
+    static String[] rowText(PrettyTable source, ColumnarRows columnarRows, int rowIndex) {
+        String[] rowText;
+        if (columnarRows != null) {
+            // typed cells are converted straight to text, without boxing them
+            rowText = new String[columnarRows.getColumnCount()];
+            for (int cIdx = 0; cIdx < rowText.length; cIdx++) {
+                rowText[cIdx] = columnarRows.getText(rowIndex, cIdx);
+            }
+        } else {
+            List<Object> row = source.readRows().get(rowIndex);
+            rowText = new String[row.size()];
+            for (int cIdx = 0; cIdx < rowText.length; cIdx++) {
+                rowText[cIdx] = PrettyTable.getCellText(row.get(cIdx));
+            }
+        }
+        return rowText;
+    }
+
+    static boolean hasLineBreak(String text) {
+        int length = text.length();
+        for (int idx = 0; idx < length; idx++) {
+            if (PrettyTable.isLineBreak(text.charAt(idx))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    static String[] splitLines(String text) {
+        // equivalent to splitting on '\R', including dropping the trailing empty lines
+        List<String> result = null;
+        int lineStart = 0;
+        int length = text.length();
+        for (int idx = 0; idx < length; idx++) {
+            char ch = text.charAt(idx);
+            if (PrettyTable.isLineBreak(ch)) {
+                if (result == null) {
+                    result = new ArrayList<>();
+                }
+                result.add(text.substring(lineStart, idx));
+                if (ch == '\r' && idx + 1 < length && text.charAt(idx + 1) == '\n') {
+                    idx++;
+                }
+                lineStart = idx + 1;
+            }
+        }
+        if (result == null) {
+            return new String[] {text};
+        }
+        result.add(text.substring(lineStart));
+        int size = result.size();
+        while (size > 0 && result.get(size - 1).isEmpty()) {
+            size--;
+        }
+        return result.subList(0, size).toArray(new String[size]);
+    }
+
+    public PrettyTable getTable() {
+        return this.table;
+    }
+
+    public List<String> getHeaders() {
+        return this.headers;
+    }
+
+    public int getRowCount() {
+        return this.rows.size();
+    }
+
+    public int getMaxColumns() {
+        return this.maxColumns;
+    }
+
+    public List<HorizontalAlign> getHorizAligns() {
+        // padded with the default alignment, so there is an entry for every column
+        return this.hAligns;
+    }
+
+    ColumnType getColumnType(int columnIndex) {
+        return this.columnar == null ? ColumnType.OBJECT : this.columnar.getColumnType(columnIndex);
+    }
+
+    public List<Object> getRow(int rowIndex) {
+        return this.rows.get(rowIndex);
+    }
+
+    public Object getCell(int rowIndex, int columnIndex) {
+        return this.rows.get(rowIndex).get(columnIndex);
+    }
+
+    public String[] getRowText(int rowIndex) {
+        return this.texts[rowIndex];
+    }
+
+    void onRowsWritten(IntConsumer listener) {
+        this.rowsWritten = listener;
+    }
+
+    void rowsWritten(int count) {
+        // called by the renderers once the headers (count 0), and then each row, have been written out
+        if (this.rowsWritten != null) {
+            this.rowsWritten.accept(count);
+        }
+    }
+
+    public String[] getPreviousRowText() {
+        // text of the row before the first one in the plan, or no cells when the plan starts at the first row
+        return this.previousText;
+    }
+
+    boolean isNestedTable(int rowIndex, int columnIndex) {
+        // only the object columns can hold nested tables, so the typed cells are never boxed
+        return this.getColumnType(columnIndex) == ColumnType.OBJECT
+            && this.rows.get(rowIndex).get(columnIndex) instanceof PrettyTable;
+    }
+
+    public String getText(int rowIndex, int columnIndex) {
+        return this.texts[rowIndex][columnIndex];
+    }
+
+    public String[] getLines(int rowIndex, int columnIndex) {
+        // the lines of a row are only kept once asked for, so rows of single line cells never need them
+        String[][] rowLines = this.lines[rowIndex];
+        if (rowLines == null) {
+            rowLines = new String[this.texts[rowIndex].length][];
+            this.lines[rowIndex] = rowLines;
+        }
+        if (rowLines[columnIndex] == null) {
+            String text = this.texts[rowIndex][columnIndex];
+            rowLines[columnIndex] = text.isEmpty() ? EMPTY_LINES : splitLines(text);
+        }
+        return rowLines[columnIndex];
+    }
+
+    public String[] getHeaderLines(int columnIndex) {
+        return splitLines(this.headers.get(columnIndex));
+    }
+
+    public List<Integer> getMaxWidths() {
+        if (this.maxWidths == null) {
+            List<Integer> result = new ArrayList<>();
+            for (int width : this.getWidths()) {
+                result.add(width);
+            }
+            this.maxWidths = result;
+        }
+        return this.maxWidths;
+    }
+
+    int[] getWidths() {
+        // the same widths as getMaxWidths(), without boxing them
+        if (this.widths == null) {
+            int[] result = this.indexedWidths.clone();
+            // nested tables are measured from the text already rendered for this plan
+            for (int rIdx = 0; rIdx < this.rows.size(); rIdx++) {
+                List<Object> row = this.rows.get(rIdx);
+                for (int cIdx = 0; cIdx < row.size() && cIdx < this.maxColumns; cIdx++) {
+                    if (this.getColumnType(cIdx) == ColumnType.OBJECT && row.get(cIdx) instanceof PrettyTable) {
+                        result[cIdx] = Math.max(result[cIdx], PrettyTable.getTextWidth(this.texts[rIdx][cIdx]));
+                    }
+                }
+            }
+            this.widths = result;
+        }
+        return this.widths;
+    }
+
+    public String formattedString(OutputFormat format) {
+        return this.formattedString(format, true);
+    }
+
+    public String formattedString(OutputFormat format, boolean removeRedundant) {
+        StringBuilder result = RenderBuffers.acquire();
+        try {
+            this.render(PrettyTable.rendererFor(format), removeRedundant, result);
+            return result.toString();
+        } catch (IOException ex) {
+            // nothing to do here
+        } finally {
+            RenderBuffers.recycle(result);
+        }
+        return null;
+    }
+
+    public void render(TableRenderInterface renderer, boolean removeRedundant, Appendable out) throws IOException {
+        renderer.render(this, removeRedundant, out);
+    }
+}
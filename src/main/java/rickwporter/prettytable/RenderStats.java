@@ -0,0 +1,140 @@
+package rickwporter.prettytable;
+
+import java.io.IOException;
+
+/**
+ * Measurements of one render of a table: the time spent in each phase, the size of the table and of the
+ * output, and whether the output came from the cache. Each nanosecond is counted in exactly one phase, so
+ * the phases add up to the total; the time spent rendering nested tables is counted in NESTED, and the
+ * nested tables report their own renders as well.
+ */
+public final class RenderStats {
+    public enum Phase {
+        // scanning the cells for the column widths
+        WIDTHS,
+        // converting the cells to text
+        TEXT,
+        // rendering the nested tables
+        NESTED,
+        // building (or writing) the output, and anything else
+        OUTPUT,
+    }
+
+    private final PrettyTable table;
+    private final String format;
+    private final boolean removeRedundant;
+    private final RenderStats parent;
+    private final long started = System.nanoTime();
+    private final long[] nanos = new long[Phase.values().length];
+    private Phase current = Phase.OUTPUT;
+    private long since = this.started;
+    private long totalNanos = 0;
+    private long outputLength = 0;
+    private boolean cacheHit = false;
+
+    RenderStats(PrettyTable source, String formatName, boolean removeRedundantRows, RenderStats outer) {
+        this.table = source;
+        this.format = formatName;
+        this.removeRedundant = removeRedundantRows;
+        this.parent = outer;
+    }
+
+    RenderStats getParent() {
+        return this.parent;
+    }
+
+    Phase switchTo(Phase phase) {
+        long now = System.nanoTime();
+        this.nanos[this.current.ordinal()] += now - this.since;
+        this.since = now;
+        Phase previous = this.current;
+        this.current = phase;
+        return previous;
+    }
+
+    void finish() {
+        this.switchTo(Phase.OUTPUT);
+        this.totalNanos = this.since - this.started;
+    }
+
+    void setCacheHit() {
+        this.cacheHit = true;
+    }
+
+    void addOutput(long length) {
+        this.outputLength += length;
+    }
+
+    Appendable counting(Appendable out) {
+        return new CountingAppendable(out);
+    }
+
+    public PrettyTable getTable() {
+        return this.table;
+    }
+
+    public String getFormat() {
+        return this.format;
+    }
+
+    public boolean isRemoveRedundant() {
+        return this.removeRedundant;
+    }
+
+    public int getRowCount() {
+        return this.table.getRowCount();
+    }
+
+    public int getColumnCount() {
+        return this.table.getHeaders().isEmpty() && this.table.getRowCount() == 0 ? 0 : this.table.getMaxColumns();
+    }
+
+    public long getOutputLength() {
+        // in chars, which is also the number of bytes for ASCII output
+        return this.outputLength;
+    }
+
+    public boolean isCacheHit() {
+        return this.cacheHit;
+    }
+
+    public long getNanos(Phase phase) {
+        return this.nanos[phase.ordinal()];
+    }
+
+    public long getTotalNanos() {
+        return this.totalNanos;
+    }
+
+    /**
+     * Passes the output through, counting the chars written.
+     */
+    private final class CountingAppendable implements Appendable {
+        private final Appendable out;
+
+        CountingAppendable(Appendable output) {
+            this.out = output;
+        }
+
+        @Override
+        public Appendable append(CharSequence text) throws IOException {
+            RenderStats.this.addOutput(text == null ? "null".length() : text.length());
+            this.out.append(text);
+            return this;
+        }
+
+        @Override
+        public Appendable append(CharSequence text, int start, int end) throws IOException {
+            RenderStats.this.addOutput(end - start);
+            this.out.append(text, start, end);
+            return this;
+        }
+
+        @Override
+        public Appendable append(char ch) throws IOException {
+            RenderStats.this.addOutput(1);
+            this.out.append(ch);
+            return this;
+        }
+    }
+}
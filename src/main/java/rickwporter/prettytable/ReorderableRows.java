@@ -0,0 +1,9 @@
+package rickwporter.prettytable;
+
+/**
+ * Row storage that can put its rows in sorted order itself, rather than having them set one at a time.
+ */
+interface ReorderableRows {
+    // order[i] is the index of the row that moves to i
+    void reorder(int[] order);
+}
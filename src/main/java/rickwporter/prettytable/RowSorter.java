@@ -0,0 +1,399 @@
+package rickwporter.prettytable;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Stable sort of the table rows, where the sort key for each row and column is extracted once up front
+ * rather than on every comparison.
+ */
+final class RowSorter {
+    private static final int INSERTION_SORT_SIZE = 16;
+
+    private final KeyColumn[] keys;
+    private final ForkJoinPool pool;
+    private final int grain;
+
+    RowSorter(
+        List<List<Object>> rows,
+        List<Integer> indices,
+        Map<Integer, Comparator<Object>> comparators,
+        ForkJoinPool forkJoinPool
+    ) {
+        int count = rows.size();
+        this.pool = count < PrettyTable.PARALLEL_THRESHOLD ? null : forkJoinPool;
+        this.grain = this.pool == null ? count : PrettyTable.getParallelGrain(count, this.pool);
+        this.keys = new KeyColumn[indices.size()];
+        for (int kIdx = 0; kIdx < this.keys.length; kIdx++) {
+            int column = indices.get(kIdx);
+            KeyColumn key = new KeyColumn(count, comparators.get(column));
+            if (this.pool == null) {
+                key.extract(rows, column, 0, count);
+            } else {
+                this.pool.invoke(new ExtractTask(key, rows, column, 0, count, this.grain));
+            }
+            key.trim();
+            this.keys[kIdx] = key;
+        }
+    }
+
+    /**
+     * Sort key for a single column. Cells are compared as numbers when both of them are numbers (the same
+     * way as Float.parseFloat() sees them), and as strings otherwise. The column decides which of the keys it
+     * needs to keep, so an all-numeric column holds only the primitive floats and an all-text column only
+     * the strings.
+     */
+    private static final class KeyColumn {
+        private final Comparator<Object> comparator;
+        private Object[] cells;
+        private String[] texts;
+        private float[] numbers;
+        private boolean[] numeric;
+
+        KeyColumn(int count, Comparator<Object> custom) {
+            this.comparator = custom;
+            if (custom != null) {
+                this.cells = new Object[count];
+            } else {
+                this.texts = new String[count];
+                this.numbers = new float[count];
+                this.numeric = new boolean[count];
+            }
+        }
+
+        void extract(List<List<Object>> rows, int column, int from, int to) {
+            if (this.comparator == null && rows instanceof ColumnarRows && ((ColumnarRows) rows).isNumeric(column)) {
+                this.extractNumbers((ColumnarRows) rows, column, from, to);
+                return;
+            }
+            for (int rIdx = from; rIdx < to; rIdx++) {
+                Object cell = rows.get(rIdx).get(column);
+                if (this.comparator != null) {
+                    this.cells[rIdx] = cell;
+                    continue;
+                }
+                String text = PrettyTable.getCellText(cell);
+                this.texts[rIdx] = text;
+                if (cell instanceof Integer || cell instanceof Long || cell instanceof Short || cell instanceof Byte) {
+                    this.numbers[rIdx] = ((Number) cell).floatValue();
+                    this.numeric[rIdx] = true;
+                } else if (isNumber(text)) {
+                    this.numbers[rIdx] = Float.parseFloat(text);
+                    this.numeric[rIdx] = true;
+                }
+            }
+        }
+
+        void extractNumbers(ColumnarRows rows, int column, int from, int to) {
+            // the primitives are read directly, and the text is only needed to compare against empty cells
+            boolean withText = rows.hasNulls(column);
+            for (int rIdx = from; rIdx < to; rIdx++) {
+                if (rows.isNull(rIdx, column)) {
+                    this.texts[rIdx] = "";
+                    continue;
+                }
+                this.numbers[rIdx] = (float) rows.getDouble(rIdx, column);
+                this.numeric[rIdx] = true;
+                if (withText) {
+                    this.texts[rIdx] = rows.getText(rIdx, column);
+                }
+            }
+        }
+
+        void trim() {
+            // only keep the keys this column needs
+            if (this.comparator != null) {
+                return;
+            }
+            int numericCount = 0;
+            for (boolean value : this.numeric) {
+                numericCount += value ? 1 : 0;
+            }
+            if (numericCount == this.numeric.length) {
+                this.texts = null;
+            }
+            if (numericCount == 0) {
+                this.numbers = null;
+            }
+            if (numericCount == 0 || numericCount == this.numeric.length) {
+                this.numeric = null;
+            }
+        }
+
+        int compare(int row1, int row2) {
+            if (this.comparator != null) {
+                return this.comparator.compare(this.cells[row1], this.cells[row2]);
+            }
+            if (this.texts == null || (this.numeric != null && this.numeric[row1] && this.numeric[row2])) {
+                return Float.compare(this.numbers[row1], this.numbers[row2]);
+            }
+            return this.texts[row1].compareTo(this.texts[row2]);
+        }
+    }
+
+    static boolean isNumber(String text) {
+        // same strings as accepted by Float.parseFloat(), but without throwing when it is not a number
+        int end = text.length();
+        int idx = 0;
+        while (idx < end && text.charAt(idx) <= ' ') {
+            idx++;
+        }
+        while (end > idx && text.charAt(end - 1) <= ' ') {
+            end--;
+        }
+        if (idx < end && (text.charAt(idx) == '+' || text.charAt(idx) == '-')) {
+            idx++;
+        }
+        if (text.startsWith("NaN", idx) || text.startsWith("Infinity", idx)) {
+            return end - idx == (text.charAt(idx) == 'N' ? "NaN" : "Infinity").length();
+        }
+        if (text.startsWith("0x", idx) || text.startsWith("0X", idx)) {
+            // hexadecimal floats are rare enough to leave to the parser
+            try {
+                Float.parseFloat(text);
+                return true;
+            } catch (NumberFormatException ex) {
+                return false;
+            }
+        }
+        int digits = 0;
+        while (idx < end && text.charAt(idx) >= '0' && text.charAt(idx) <= '9') {
+            idx++;
+            digits++;
+        }
+        if (idx < end && text.charAt(idx) == '.') {
+            idx++;
+            while (idx < end && text.charAt(idx) >= '0' && text.charAt(idx) <= '9') {
+                idx++;
+                digits++;
+            }
+        }
+        if (digits == 0) {
+            return false;
+        }
+        if (idx < end && (text.charAt(idx) == 'e' || text.charAt(idx) == 'E')) {
+            idx++;
+            if (idx < end && (text.charAt(idx) == '+' || text.charAt(idx) == '-')) {
+                idx++;
+            }
+            int exponentDigits = 0;
+            while (idx < end && text.charAt(idx) >= '0' && text.charAt(idx) <= '9') {
+                idx++;
+                exponentDigits++;
+            }
+            if (exponentDigits == 0) {
+                return false;
+            }
+        }
+        if (idx < end && "fFdD".indexOf(text.charAt(idx)) >= 0) {
+            idx++;
+        }
+        return idx == end;
+    }
+
+    int compare(int row1, int row2) {
+        for (KeyColumn key : this.keys) {
+            int value = key.compare(row1, row2);
+            if (value != 0) {
+                return value;
+            }
+        }
+        return 0;
+    }
+
+    int[] sortedOrder(int count) {
+        int[] order = new int[count];
+        for (int idx = 0; idx < count; idx++) {
+            order[idx] = idx;
+        }
+        if (this.pool == null) {
+            this.mergeSort(order, order.clone(), 0, count);
+        } else {
+            this.pool.invoke(new SortTask(this, order, order.clone(), 0, count));
+        }
+        return order;
+    }
+
+    int[] topOrder(int count, int limit) {
+        // keeps the best rows seen so far in a heap with the worst of them on top, so each row is either
+        // dropped after one comparison or replaces the top in O(log limit)
+        int[] heap = new int[Math.min(count, limit)];
+        int size = 0;
+        for (int row = 0; row < count; row++) {
+            if (size < heap.length) {
+                heap[size] = row;
+                this.siftUp(heap, size++);
+            } else if (size > 0 && this.compareStable(row, heap[0]) < 0) {
+                heap[0] = row;
+                this.siftDown(heap, 0, size);
+            }
+        }
+        // taking the worst off the top repeatedly leaves the rows in sorted order
+        for (int end = size - 1; end > 0; end--) {
+            int worst = heap[0];
+            heap[0] = heap[end];
+            heap[end] = worst;
+            this.siftDown(heap, 0, end);
+        }
+        return heap;
+    }
+
+    private int compareStable(int row1, int row2) {
+        // equal rows keep their original order, the same as the merge sort
+        int value = this.compare(row1, row2);
+        return value != 0 ? value : Integer.compare(row1, row2);
+    }
+
+    private void siftUp(int[] heap, int index) {
+        int pos = index;
+        while (pos > 0) {
+            int parent = (pos - 1) >>> 1;
+            if (this.compareStable(heap[parent], heap[pos]) >= 0) {
+                break;
+            }
+            int swap = heap[parent];
+            heap[parent] = heap[pos];
+            heap[pos] = swap;
+            pos = parent;
+        }
+    }
+
+    private void siftDown(int[] heap, int index, int size) {
+        int pos = index;
+        while (true) {
+            int largest = pos;
+            int left = 2 * pos + 1;
+            int right = left + 1;
+            if (left < size && this.compareStable(heap[left], heap[largest]) > 0) {
+                largest = left;
+            }
+            if (right < size && this.compareStable(heap[right], heap[largest]) > 0) {
+                largest = right;
+            }
+            if (largest == pos) {
+                return;
+            }
+            int swap = heap[largest];
+            heap[largest] = heap[pos];
+            heap[pos] = swap;
+            pos = largest;
+        }
+    }
+
+    void mergeSort(int[] order, int[] work, int from, int to) {
+        // sorts order[from, to), using the same range of work as scratch space
+        if (to - from <= INSERTION_SORT_SIZE) {
+            this.insertionSort(order, from, to);
+            return;
+        }
+        int mid = (from + to) >>> 1;
+        this.mergeSort(order, work, from, mid);
+        this.mergeSort(order, work, mid, to);
+        this.merge(order, work, from, mid, to);
+    }
+
+    void merge(int[] order, int[] work, int from, int mid, int to) {
+        if (this.compare(order[mid - 1], order[mid]) <= 0) {
+            // already in order
+            return;
+        }
+        System.arraycopy(order, from, work, from, to - from);
+        int left = from;
+        int right = mid;
+        for (int idx = from; idx < to; idx++) {
+            // ties are taken from the left, which keeps the sort stable
+            if (right >= to || (left < mid && this.compare(work[left], work[right]) <= 0)) {
+                order[idx] = work[left++];
+            } else {
+                order[idx] = work[right++];
+            }
+        }
+    }
+
+    private void insertionSort(int[] order, int from, int to) {
+        for (int idx = from + 1; idx < to; idx++) {
+            int row = order[idx];
+            int pos = idx;
+            while (pos > from && this.compare(order[pos - 1], row) > 0) {
+                order[pos] = order[pos - 1];
+                pos--;
+            }
+            order[pos] = row;
+        }
+    }
+
+    /**
+     * Fills in a range of the keys for a column, splitting the range across the pool.
+     */
+    private static final class ExtractTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final transient KeyColumn key;
+        private final transient List<List<Object>> rows;
+        private final int column;
+        private final int from;
+        private final int to;
+        private final int grain;
+
+        ExtractTask(KeyColumn keyColumn, List<List<Object>> rowList, int keyIndex, int start, int end, int perTask) {
+            this.key = keyColumn;
+            this.rows = rowList;
+            this.column = keyIndex;
+            this.from = start;
+            this.to = end;
+            this.grain = perTask;
+        }
+
+        @Override
+        protected void compute() {
+            if (this.to - this.from <= this.grain) {
+                this.key.extract(this.rows, this.column, this.from, this.to);
+                return;
+            }
+            int mid = (this.from + this.to) >>> 1;
+            invokeAll(
+                new ExtractTask(this.key, this.rows, this.column, this.from, mid, this.grain),
+                new ExtractTask(this.key, this.rows, this.column, mid, this.to, this.grain)
+            );
+        }
+    }
+
+    /**
+     * Sorts both halves of a range in parallel, then merges them. The merge is the same as the sequential
+     * one, so the result is identical.
+     */
+    private static final class SortTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final transient RowSorter sorter;
+        private final int[] order;
+        private final int[] work;
+        private final int from;
+        private final int to;
+
+        SortTask(RowSorter rowSorter, int[] rowOrder, int[] scratch, int start, int end) {
+            this.sorter = rowSorter;
+            this.order = rowOrder;
+            this.work = scratch;
+            this.from = start;
+            this.to = end;
+        }
+
+        @Override
+        protected void compute() {
+            if (this.to - this.from <= this.sorter.grain) {
+                this.sorter.mergeSort(this.order, this.work, this.from, this.to);
+                return;
+            }
+            int mid = (this.from + this.to) >>> 1;
+            invokeAll(
+                new SortTask(this.sorter, this.order, this.work, this.from, mid),
+                new SortTask(this.sorter, this.order, this.work, mid, this.to)
+            );
+            this.sorter.merge(this.order, this.work, this.from, mid, this.to);
+        }
+    }
+}
@@ -0,0 +1,225 @@
+package rickwporter.prettytable;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.List;
+
+import rickwporter.prettytable.PrettyTable.ColumnType;
+import rickwporter.prettytable.PrettyTable.HorizontalAlign;
+
+/**
+ * Text output of a table kept as the rendered lines of each row, so that only the rows changed since the last
+ * render are rendered again. Everything is rendered again when a column width, the headers or the alignments
+ * change, or when the rows may have been changed without saying which (like after sorting).
+ */
+final class RowTextCache {
+    private static final int INITIAL_CAPACITY = 64;
+    private static final String[] NO_TEXT = new String[0];
+
+    private boolean valid = false;
+    private boolean removeRedundant;
+    private List<String> headers = new ArrayList<>();
+    private TextLayout layout = null;
+    // the rules and headers above the rows, and the rule below them
+    private String top = "";
+    private String bottom = "";
+    private final List<String[]> texts = new ArrayList<>();
+    private final List<String> blocks = new ArrayList<>();
+    private int[] lineCounts = new int[INITIAL_CAPACITY];
+    private final BitSet dirty = new BitSet();
+    // rows with nested tables, which are rendered every time since the nested tables may have changed
+    private final BitSet nested = new BitSet();
+    // filled in again for each row rendered, rather than allocated per row
+    private String[][] splits = new String[0][];
+    private String[][] singles = new String[0][];
+    private final StringBuilder rowOut = new StringBuilder();
+
+    void invalidate() {
+        this.valid = false;
+    }
+
+    void rowChanged(int rowIndex) {
+        this.dirty.set(rowIndex);
+    }
+
+    String getText() {
+        StringBuilder result = RenderBuffers.acquire();
+        try {
+            result.append(this.top);
+            for (String block : this.blocks) {
+                result.append(block);
+            }
+            return result.append(this.bottom).toString();
+        } finally {
+            RenderBuffers.recycle(result);
+        }
+    }
+
+    private int lineCount() {
+        int count = countLines(this.top) + countLines(this.bottom);
+        for (int rIdx = 0; rIdx < this.blocks.size(); rIdx++) {
+            count += this.lineCounts[rIdx];
+        }
+        return count;
+    }
+
+    private static int countLines(String text) {
+        int count = 0;
+        for (int idx = text.indexOf('\n'); idx >= 0; idx = text.indexOf('\n', idx + 1)) {
+            count++;
+        }
+        return count;
+    }
+
+    private static void addLines(List<String> result, String text) {
+        int start = 0;
+        for (int idx = text.indexOf('\n'); idx >= 0; idx = text.indexOf('\n', idx + 1)) {
+            result.add(text.substring(start, idx));
+            start = idx + 1;
+        }
+    }
+
+    List<TextChange> refresh(PrettyTable table, boolean removeRedundantRows) {
+        List<List<Object>> rows = table.readRows();
+        int maxColumns = table.getHeaders().isEmpty() && rows.isEmpty() ? 0 : table.getMaxColumns();
+        int[] maxWidths = new int[maxColumns];
+        for (int cIdx = 0; cIdx < maxColumns; cIdx++) {
+            maxWidths[cIdx] = table.getMaxWidthForColumn(cIdx);
+        }
+        List<HorizontalAlign> aligns = new ArrayList<>(table.getHorizAligns());
+        for (int cIdx = aligns.size(); cIdx <= maxColumns; cIdx++) {
+            aligns.add(table.getDefaultHorizAlign());
+        }
+        int oldLines = this.lineCount();
+        boolean layoutChanged = removeRedundantRows != this.removeRedundant || this.layout == null
+            || !this.layout.matches(maxWidths, aligns) || !table.getHeaders().equals(this.headers);
+        if (!this.valid || layoutChanged || rows.size() < this.blocks.size()) {
+            this.removeRedundant = removeRedundantRows;
+            this.layout = table.getTextLayout(maxWidths, aligns);
+            this.headers = new ArrayList<>(table.getHeaders());
+            this.rebuild(table, rows, maxColumns);
+            List<String> lines = new ArrayList<>();
+            addLines(lines, this.getText());
+            return Collections.singletonList(new TextChange(0, oldLines, lines));
+        }
+        return this.update(table, rows, oldLines);
+    }
+
+    private void rebuild(PrettyTable table, List<List<Object>> rows, int maxColumns) {
+        StringBuilder out = new StringBuilder();
+        try {
+            if (!this.headers.isEmpty()) {
+                this.layout.rule(out);
+                String[][] headerLines = new String[this.headers.size()][];
+                for (int cIdx = 0; cIdx < headerLines.length; cIdx++) {
+                    headerLines[cIdx] = RenderPlan.splitLines(this.headers.get(cIdx));
+                }
+                this.layout.row(out, headerLines, headerLines.length);
+            }
+            this.layout.rule(out);
+            this.top = out.toString();
+            out.setLength(0);
+            this.layout.rule(out);
+            this.bottom = out.toString();
+        } catch (IOException ex) {
+            // nothing to do here
+        }
+        this.texts.clear();
+        this.blocks.clear();
+        this.dirty.clear();
+        this.nested.clear();
+        this.splits = new String[maxColumns][];
+        this.singles = new String[maxColumns][1];
+        ColumnarRows columnar = rows instanceof ColumnarRows ? (ColumnarRows) rows : null;
+        for (int rIdx = 0; rIdx < rows.size(); rIdx++) {
+            this.renderRow(table, rows, columnar, rIdx);
+        }
+        this.valid = true;
+    }
+
+    private List<TextChange> update(PrettyTable table, List<List<Object>> rows, int oldLines) {
+        ColumnarRows columnar = rows instanceof ColumnarRows ? (ColumnarRows) rows : null;
+        List<TextChange> changes = new ArrayList<>();
+        int line = countLines(this.top);
+        // once the number of lines changes, everything from that row down is a single change
+        int tailRow = -1;
+        int tailLine = 0;
+        boolean textChanged = false;
+        for (int rIdx = 0; rIdx < rows.size(); rIdx++) {
+            // without redundant cells, a row is also rendered again when the text of the row above changes
+            boolean appended = rIdx >= this.blocks.size();
+            if (!appended && !this.dirty.get(rIdx) && !this.nested.get(rIdx)
+                && !(this.removeRedundant && textChanged)) {
+                textChanged = false;
+                line += this.lineCounts[rIdx];
+                continue;
+            }
+            String[] oldText = appended ? null : this.texts.get(rIdx);
+            String oldBlock = appended ? null : this.blocks.get(rIdx);
+            int oldCount = appended ? 0 : this.lineCounts[rIdx];
+            this.renderRow(table, rows, columnar, rIdx);
+            textChanged = !Arrays.equals(oldText, this.texts.get(rIdx));
+            if (tailRow < 0 && (appended || oldCount != this.lineCounts[rIdx])) {
+                tailRow = rIdx;
+                tailLine = line;
+            } else if (tailRow < 0 && !oldBlock.equals(this.blocks.get(rIdx))) {
+                List<String> lines = new ArrayList<>();
+                addLines(lines, this.blocks.get(rIdx));
+                changes.add(new TextChange(line, oldCount, lines));
+            }
+            line += this.lineCounts[rIdx];
+        }
+        this.dirty.clear();
+        if (tailRow >= 0) {
+            List<String> lines = new ArrayList<>();
+            for (String block : this.blocks.subList(tailRow, this.blocks.size())) {
+                addLines(lines, block);
+            }
+            addLines(lines, this.bottom);
+            changes.add(new TextChange(tailLine, oldLines - tailLine, lines));
+        }
+        return changes;
+    }
+
+    private void renderRow(PrettyTable table, List<List<Object>> rows, ColumnarRows columnar, int rowIndex) {
+        String[] currentRow = RenderPlan.rowText(table, columnar, rowIndex);
+        String[] lastRow = rowIndex > 0 ? this.texts.get(rowIndex - 1) : NO_TEXT;
+        boolean redundant = this.removeRedundant;
+        boolean hasNested = false;
+        for (int cIdx = 0; cIdx < currentRow.length; cIdx++) {
+            redundant = redundant && cIdx < lastRow.length && lastRow[cIdx].equals(currentRow[cIdx]);
+            boolean cellNested = false;
+            if (columnar == null || columnar.getColumnType(cIdx) == ColumnType.OBJECT) {
+                Object cell = columnar == null ? rows.get(rowIndex).get(cIdx) : columnar.getCell(rowIndex, cIdx);
+                cellNested = cell instanceof PrettyTable;
+                hasNested = hasNested || cellNested;
+            }
+            // nested tables are left whole, like in the full text render
+            String text = cellNested ? currentRow[cIdx] : table.limitText(currentRow[cIdx]);
+            this.splits[cIdx] = redundant
+                ? TextTableRender.EMPTY_LINES : TextTableRender.cellLines(this.singles, cIdx, text);
+        }
+        this.rowOut.setLength(0);
+        try {
+            this.layout.row(this.rowOut, this.splits, currentRow.length);
+        } catch (IOException ex) {
+            // nothing to do here
+        }
+        String block = this.rowOut.toString();
+        if (rowIndex < this.blocks.size()) {
+            this.texts.set(rowIndex, currentRow);
+            this.blocks.set(rowIndex, block);
+        } else {
+            this.texts.add(currentRow);
+            this.blocks.add(block);
+        }
+        if (rowIndex >= this.lineCounts.length) {
+            this.lineCounts = Arrays.copyOf(this.lineCounts, Math.max(rowIndex + 1, this.lineCounts.length * 2));
+        }
+        this.lineCounts[rowIndex] = countLines(block);
+        this.nested.set(rowIndex, hasNested);
+    }
+}
@@ -0,0 +1,233 @@
+package rickwporter.prettytable;
+
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.stream.Stream;
+
+import rickwporter.prettytable.PrettyTable.HorizontalAlign;
+
+/**
+ * Text table that writes each row as soon as it is added, instead of holding all of them until the table is
+ * rendered. The column widths are fixed up front, either from declared widths or from the first rows, and
+ * later cells that do not fit are truncated or wrapped.
+ */
+public final class StreamingPrettyTable implements Closeable {
+    static final int DEFAULT_SAMPLE_SIZE = 100;
+
+    private final Appendable out;
+    private final List<String> headers = new ArrayList<>();
+    private List<HorizontalAlign> hAligns = new ArrayList<>();
+    private int[] declaredWidths = new int[0];
+    private int sampleSize = DEFAULT_SAMPLE_SIZE;
+    private CellOverflow overflow = CellOverflow.TRUNCATE;
+    private boolean removeRedundant = true;
+    private List<String[]> pending = new ArrayList<>();
+    private List<Integer> widths = null;
+    // the layout compiled once the widths are fixed, and the cell lines of the row being written
+    private TextLayout layout;
+    private int[] widthArray;
+    private String[][] splits;
+    private String[][] singles;
+    private String[] lastRow = new String[0];
+    private long rowCount = 0;
+    private boolean closed = false;
+
+    public StreamingPrettyTable(Appendable output, String... hdrs) {
+        this.out = output;
+        this.headers.addAll(Arrays.asList(hdrs));
+    }
+
+    public List<String> getHeaders() {
+        return this.headers;
+    }
+
+    public void setColumnWidths(int... columnWidths) {
+        // declared widths are used as-is, and the first row is written as soon as it is added
+        this.checkNotStarted();
+        this.declaredWidths = columnWidths.clone();
+        this.sampleSize = columnWidths.length == 0 ? DEFAULT_SAMPLE_SIZE : 0;
+    }
+
+    public void setSampleSize(int rows) {
+        // number of rows held back to measure the column widths, before anything is written
+        this.checkNotStarted();
+        this.sampleSize = rows;
+    }
+
+    public int getSampleSize() {
+        return this.sampleSize;
+    }
+
+    public void setOverflow(CellOverflow policy) {
+        this.overflow = policy;
+    }
+
+    public CellOverflow getOverflow() {
+        return this.overflow;
+    }
+
+    public void setRemoveRedundant(boolean remove) {
+        this.removeRedundant = remove;
+    }
+
+    public void setHorizAligns(HorizontalAlign... fmts) {
+        this.checkNotStarted();
+        this.hAligns = new ArrayList<>(Arrays.asList(fmts));
+    }
+
+    public List<HorizontalAlign> getHorizAligns() {
+        return this.hAligns;
+    }
+
+    public List<Integer> getColumnWidths() {
+        // empty until the widths have been fixed by the first rows
+        return this.widths == null ? new ArrayList<>() : this.widths;
+    }
+
+    public long getRowCount() {
+        return this.rowCount;
+    }
+
+    private void checkNotStarted() {
+        if (this.widths != null) {
+            throw new IllegalStateException("The column widths are already fixed");
+        }
+    }
+
+    public void addRow(Object... row) throws IOException {
+        if (this.closed) {
+            throw new IllegalStateException("The table is closed");
+        }
+        // the columns are fixed once the widths are, or by the declared widths
+        int columns = Integer.MAX_VALUE;
+        if (this.widths != null) {
+            columns = this.widths.size();
+        } else if (this.declaredWidths.length > 0) {
+            columns = Math.max(this.headers.size(), this.declaredWidths.length);
+        }
+        if (row.length > columns) {
+            throw new IllegalArgumentException(
+                "Row has " + row.length + " cells, but the table has " + columns + " columns");
+        }
+        String[] texts = new String[row.length];
+        for (int cIdx = 0; cIdx < row.length; cIdx++) {
+            texts[cIdx] = PrettyTable.getCellText(row[cIdx]);
+        }
+        this.rowCount++;
+        if (this.widths != null) {
+            this.writeRow(texts);
+            return;
+        }
+        this.pending.add(texts);
+        if (this.pending.size() >= this.sampleSize) {
+            this.start();
+        }
+    }
+
+    public void addRows(Iterator<? extends Object[]> rows) throws IOException {
+        while (rows.hasNext()) {
+            this.addRow(rows.next());
+        }
+    }
+
+    public void addRows(Stream<? extends Object[]> rows) throws IOException {
+        this.addRows(rows.iterator());
+    }
+
+    private void start() throws IOException {
+        int columns = Math.max(this.headers.size(), this.declaredWidths.length);
+        for (String[] texts : this.pending) {
+            columns = Math.max(columns, texts.length);
+        }
+        List<Integer> columnWidths = new ArrayList<>();
+        for (int cIdx = 0; cIdx < columns; cIdx++) {
+            if (cIdx < this.declaredWidths.length) {
+                columnWidths.add(this.declaredWidths[cIdx]);
+                continue;
+            }
+            int maxWidth = cIdx < this.headers.size() ? DisplayWidth.of(this.headers.get(cIdx)) : 0;
+            for (String[] texts : this.pending) {
+                if (cIdx < texts.length) {
+                    maxWidth = Math.max(maxWidth, PrettyTable.getTextWidth(texts[cIdx]));
+                }
+            }
+            columnWidths.add(maxWidth);
+        }
+        for (int cIdx = this.hAligns.size(); cIdx < columns; cIdx++) {
+            this.hAligns.add(HorizontalAlign.CENTER);
+        }
+        this.widths = columnWidths;
+        this.widthArray = new int[columns];
+        for (int cIdx = 0; cIdx < columns; cIdx++) {
+            this.widthArray[cIdx] = columnWidths.get(cIdx);
+        }
+        this.layout = new TextLayout(this.widthArray, this.hAligns);
+        this.splits = new String[columns][];
+        this.singles = new String[columns][1];
+
+        if (!this.headers.isEmpty()) {
+            this.layout.rule(this.out);
+            this.fitLines(this.headers.toArray(new String[0]), false);
+            this.layout.row(this.out, this.splits, columns);
+        }
+        this.layout.rule(this.out);
+        for (String[] texts : this.pending) {
+            this.writeRow(texts);
+        }
+        this.pending = null;
+    }
+
+    private void writeRow(String[] texts) throws IOException {
+        this.fitLines(texts, this.removeRedundant);
+        this.layout.row(this.out, this.splits, this.splits.length);
+        if (this.removeRedundant) {
+            this.lastRow = texts;
+        }
+    }
+
+    private void fitLines(String[] texts, boolean redundantCheck) {
+        // every column gets an entry, so shorter rows still line up with the rules
+        boolean redundant = redundantCheck;
+        for (int cIdx = 0; cIdx < this.splits.length; cIdx++) {
+            String text = cIdx < texts.length ? texts[cIdx] : "";
+            redundant = redundant && cIdx < this.lastRow.length && this.lastRow[cIdx].equals(text);
+            if (redundant) {
+                this.splits[cIdx] = TextTableRender.EMPTY_LINES;
+            } else {
+                String[] lines = TextTableRender.cellLines(this.singles, cIdx, text);
+                this.splits[cIdx] = OutputLimits.fit(lines, this.widthArray[cIdx], this.overflow);
+            }
+        }
+    }
+
+    public void flush() throws IOException {
+        // fixes the widths from the rows seen so far, when there are fewer of them than the sample size
+        if (this.widths == null) {
+            this.start();
+        }
+        if (this.out instanceof Flushable) {
+            ((Flushable) this.out).flush();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        // NOTE: writes the closing rule and flushes, but the caller still owns the output
+        if (this.closed) {
+            return;
+        }
+        if (this.widths == null) {
+            this.start();
+        }
+        this.layout.rule(this.out);
+        this.closed = true;
+        if (this.out instanceof Flushable) {
+            ((Flushable) this.out).flush();
+        }
+    }
+}
@@ -1,5 +1,15 @@
 package rickwporter.prettytable;
 
+import java.io.IOException;
+
 public interface TableRenderInterface {
     String render(PrettyTable table, boolean removeRedundant);
+
+    default void render(PrettyTable table, boolean removeRedundant, Appendable out) throws IOException {
+        out.append(render(table, removeRedundant));
+    }
+
+    default void render(RenderPlan plan, boolean removeRedundant, Appendable out) throws IOException {
+        render(plan.getTable(), removeRedundant, out);
+    }
 }
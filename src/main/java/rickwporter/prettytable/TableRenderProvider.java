@@ -0,0 +1,13 @@
+package rickwporter.prettytable;
+
+/**
+ * Service interface for adding renderers, found with a ServiceLoader through a
+ * META-INF/services/rickwporter.prettytable.TableRenderProvider entry.
+ */
+public interface TableRenderProvider {
+    // the name the renderer is looked up by, which is not case sensitive
+    String getFormatName();
+
+    // the renderer is shared between threads, so it should not keep any state between renders
+    TableRenderInterface getRenderer();
+}
@@ -0,0 +1,171 @@
+package rickwporter.prettytable;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import rickwporter.prettytable.PrettyTable.OutputFormat;
+
+/**
+ * Renders tables on an executor, returning the output as a CompletableFuture. By default each render gets
+ * a virtual thread when the JDK has them, and otherwise runs on a pool with a thread per core. The number of
+ * renders in flight is bounded, and a caller submitting more than that waits until earlier ones finish, so
+ * the pending output never grows without bound. A table must not be changed (or rendered elsewhere, including
+ * as a table nested in another one) until its render completes.
+ */
+public final class TableRenderService implements AutoCloseable {
+    private static final int DEFAULT_IN_FLIGHT_PER_CORE = 4;
+
+    private final ExecutorService executor;
+    private final boolean ownsExecutor;
+    private final int maxInFlight;
+    private final Semaphore inFlight;
+
+    public TableRenderService() {
+        this(Runtime.getRuntime().availableProcessors() * DEFAULT_IN_FLIGHT_PER_CORE);
+    }
+
+    public TableRenderService(int maxRenders) {
+        this(defaultExecutor(), true, maxRenders);
+    }
+
+    public TableRenderService(ExecutorService service, int maxRenders) {
+        // NOTE: the caller still owns the executor, so it is not shut down by close()
+        this(service, false, maxRenders);
+    }
+
+    private TableRenderService(ExecutorService service, boolean owned, int maxRenders) {
+        if (maxRenders < 1) {
+            throw new IllegalArgumentException("At least one render must be allowed in flight, not " + maxRenders);
+        }
+        this.executor = service;
+        this.ownsExecutor = owned;
+        this.maxInFlight = maxRenders;
+        this.inFlight = new Semaphore(maxRenders);
+    }
+
+    static ExecutorService defaultExecutor() {
+        // looked up by name, so this still compiles (and runs) on JDKs without virtual threads
+        try {
+            Method method = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) method.invoke(null);
+        } catch (ReflectiveOperationException ex) {
+            AtomicInteger count = new AtomicInteger();
+            ThreadFactory factory = runnable -> {
+                Thread thread = new Thread(runnable, "prettytable-render-" + count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            };
+            return Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(), factory);
+        }
+    }
+
+    public ExecutorService getExecutor() {
+        return this.executor;
+    }
+
+    public int getMaxInFlight() {
+        return this.maxInFlight;
+    }
+
+    public int getInFlight() {
+        return this.maxInFlight - this.inFlight.availablePermits();
+    }
+
+    public CompletableFuture<String> render(PrettyTable table) {
+        return this.render(table, table.getDefaultOutput(), true);
+    }
+
+    public CompletableFuture<String> render(PrettyTable table, OutputFormat format, boolean removeRedundant) {
+        CompletableFuture<String> result = new CompletableFuture<>();
+        try {
+            this.inFlight.acquire();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            result.completeExceptionally(new CancellationException("Interrupted waiting to render"));
+            return result;
+        }
+        try {
+            // a render cancelled before it started is skipped, rather than taken off the executor's queue, so
+            // the task always runs to release its place
+            this.executor.execute(() -> this.run(table, format, removeRedundant, result));
+        } catch (RuntimeException ex) {
+            // rejected by the executor, most likely because it was shut down
+            this.inFlight.release();
+            result.completeExceptionally(ex);
+        }
+        return result;
+    }
+
+    private void run(PrettyTable table, OutputFormat format, boolean removeRedundant,
+        CompletableFuture<String> result) {
+        // the place is given up before the result completes, so it is free by the time anyone sees the result
+        String output = null;
+        Throwable error = null;
+        try {
+            if (!result.isDone()) {
+                output = table.formattedString(format, removeRedundant);
+            }
+        } catch (RuntimeException | Error ex) {
+            error = ex;
+        } finally {
+            this.inFlight.release();
+        }
+        if (error != null) {
+            result.completeExceptionally(error);
+        } else {
+            result.complete(output);
+        }
+    }
+
+    public CompletableFuture<List<String>> renderAll(List<PrettyTable> tables, OutputFormat format,
+        boolean removeRedundant) {
+        // the outputs are in the same order as the tables, however the renders finish
+        List<CompletableFuture<String>> renders = new ArrayList<>();
+        CompletableFuture<List<String>> result = new CompletableFuture<>();
+        for (PrettyTable table : tables) {
+            if (result.isDone()) {
+                break;
+            }
+            CompletableFuture<String> render = this.render(table, format, removeRedundant);
+            // the first failure fails the batch, without waiting for the rest
+            render.whenComplete((output, error) -> {
+                if (error != null) {
+                    result.completeExceptionally(error);
+                }
+            });
+            renders.add(render);
+        }
+        CompletableFuture.allOf(renders.toArray(new CompletableFuture<?>[0])).thenRun(() -> {
+            List<String> outputs = new ArrayList<>();
+            for (CompletableFuture<String> render : renders) {
+                outputs.add(render.join());
+            }
+            result.complete(outputs);
+        });
+        result.whenComplete((outputs, error) -> {
+            // cancelling (or failing) the batch cancels the renders that have not finished
+            if (error != null) {
+                for (CompletableFuture<String> render : renders) {
+                    render.cancel(true);
+                }
+            }
+        });
+        return result;
+    }
+
+    @Override
+    public void close() {
+        // renders already submitted still complete, but no new ones are accepted
+        if (this.ownsExecutor) {
+            this.executor.shutdown();
+        }
+    }
+}
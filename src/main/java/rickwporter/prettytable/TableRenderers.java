@@ -0,0 +1,89 @@
+package rickwporter.prettytable;
+
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.ServiceLoader;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+
+import rickwporter.prettytable.PrettyTable.OutputFormat;
+
+/**
+ * Registry of the renderers by format name. The built-in renderers are stateless, so a single instance of
+ * each is shared, and renderers from TableRenderProvider services are added the first time a name is looked
+ * up.
+ */
+public final class TableRenderers {
+    private static final Map<OutputFormat, TableRenderInterface> BUILT_IN = new EnumMap<>(OutputFormat.class);
+    private static final Map<String, TableRenderInterface> BY_NAME = new ConcurrentHashMap<>();
+    private static volatile boolean loaded = false;
+
+    static {
+        BUILT_IN.put(OutputFormat.TEXT, new TextTableRender());
+        BUILT_IN.put(OutputFormat.CSV, new CsvTableRender());
+        BUILT_IN.put(OutputFormat.HTML, new HtmlTableRender());
+        BUILT_IN.put(OutputFormat.JSON, new JsonTableRender());
+        for (Map.Entry<OutputFormat, TableRenderInterface> entry : BUILT_IN.entrySet()) {
+            BY_NAME.put(entry.getKey().name(), entry.getValue());
+        }
+    }
+
+    private TableRenderers() {
+    }
+
+    private static String key(String name) {
+        return name.toUpperCase(Locale.ROOT);
+    }
+
+    private static void loadProviders() {
+        if (loaded) {
+            return;
+        }
+        synchronized (BY_NAME) {
+            if (!loaded) {
+                // services can add formats, but not replace the built-in ones
+                for (TableRenderProvider provider : ServiceLoader.load(TableRenderProvider.class)) {
+                    BY_NAME.putIfAbsent(key(provider.getFormatName()), provider.getRenderer());
+                }
+                loaded = true;
+            }
+        }
+    }
+
+    public static TableRenderInterface get(OutputFormat format) {
+        return BUILT_IN.get(format);
+    }
+
+    public static TableRenderInterface get(String name) {
+        loadProviders();
+        TableRenderInterface renderer = BY_NAME.get(key(name));
+        if (renderer == null) {
+            throw new IllegalArgumentException("No renderer for format " + name);
+        }
+        return renderer;
+    }
+
+    public static void register(String name, TableRenderInterface renderer) {
+        loadProviders();
+        if (BUILT_IN.containsKey(format(name))) {
+            throw new IllegalArgumentException("Format " + name + " is built in");
+        }
+        BY_NAME.put(key(name), renderer);
+    }
+
+    public static Set<String> getNames() {
+        loadProviders();
+        return new TreeSet<>(BY_NAME.keySet());
+    }
+
+    private static OutputFormat format(String name) {
+        for (OutputFormat format : OutputFormat.values()) {
+            if (format.name().equals(key(name))) {
+                return format;
+            }
+        }
+        return null;
+    }
+}
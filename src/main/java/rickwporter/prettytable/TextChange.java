@@ -0,0 +1,36 @@
+package rickwporter.prettytable;
+
+import java.util.List;
+
+/**
+ * Lines of the text output that changed since it was last rendered: the removed lines, starting at the given
+ * line, are replaced by the new ones. Changes are listed from the top of the output, and only the last one can
+ * change the number of lines, so the line numbers are the same in the old and the new output.
+ */
+public final class TextChange {
+    private final int line;
+    private final int removed;
+    private final List<String> lines;
+
+    TextChange(int firstLine, int removedLines, List<String> newLines) {
+        this.line = firstLine;
+        this.removed = removedLines;
+        this.lines = newLines;
+    }
+
+    public int getLine() {
+        return this.line;
+    }
+
+    public int getRemovedLines() {
+        return this.removed;
+    }
+
+    public List<String> getLines() {
+        return this.lines;
+    }
+
+    public String toString() {
+        return "@" + this.line + " -" + this.removed + " +" + this.lines.size();
+    }
+}
@@ -0,0 +1,143 @@
+package rickwporter.prettytable;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.List;
+
+import rickwporter.prettytable.PrettyTable.HorizontalAlign;
+
+/**
+ * Text table layout compiled from the column widths and alignments. The rule line is built once, and cells
+ * are padded by copying slices of a run of spaces ending in the column separator, so writing a row line takes
+ * a few bulk appends per cell. Since it never changes once compiled, a layout is kept between renders for as
+ * long as the widths and alignments stay the same.
+ */
+final class TextLayout {
+    // a space either side of the text, then the separator
+    private static final int CELL_EXTRA = 3;
+
+    private final int[] widths;
+    private final HorizontalAlign[] aligns;
+    private final String rule;
+    // spaces followed by a separator, long enough for the padding of the widest column
+    private final String slab;
+    private final int slabSpaces;
+    private final int lineLength;
+
+    TextLayout(int[] columnWidths, List<HorizontalAlign> hAligns) {
+        this.widths = columnWidths.clone();
+        this.aligns = hAligns.subList(0, this.widths.length).toArray(new HorizontalAlign[0]);
+        int maxWidth = 0;
+        int length = 2;
+        StringBuilder ruleLine = new StringBuilder().append('+');
+        for (int width : this.widths) {
+            maxWidth = Math.max(maxWidth, width);
+            length += width + CELL_EXTRA;
+            for (int idx = 0; idx < width + 2; idx++) {
+                ruleLine.append('-');
+            }
+            ruleLine.append('+');
+        }
+        this.rule = ruleLine.append('\n').toString();
+        this.slabSpaces = maxWidth + 2;
+        StringBuilder spaces = new StringBuilder(this.slabSpaces + 1);
+        for (int idx = 0; idx < this.slabSpaces; idx++) {
+            spaces.append(' ');
+        }
+        this.slab = spaces.append('|').toString();
+        this.lineLength = length;
+    }
+
+    boolean matches(int[] columnWidths, List<HorizontalAlign> hAligns) {
+        if (!Arrays.equals(this.widths, columnWidths) || hAligns.size() < this.widths.length) {
+            return false;
+        }
+        for (int cIdx = 0; cIdx < this.aligns.length; cIdx++) {
+            if (this.aligns[cIdx] != hAligns.get(cIdx)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    int getColumns() {
+        return this.widths.length;
+    }
+
+    int getLineLength() {
+        // of a line with every cell on a single line, including the newline
+        return this.lineLength;
+    }
+
+    void rule(Appendable out) throws IOException {
+        out.append(this.rule);
+    }
+
+    void row(Appendable out, String[][] splits, int cells) throws IOException {
+        int maxLines = 0;
+        for (int cIdx = 0; cIdx < cells; cIdx++) {
+            maxLines = Math.max(maxLines, splits[cIdx].length);
+        }
+        for (int line = 0; line < maxLines; line++) {
+            this.line(out, splits, cells, line);
+        }
+    }
+
+    void line(Appendable out, String[][] splits, int cells, int line) throws IOException {
+        out.append('|');
+        for (int cIdx = 0; cIdx < cells; cIdx++) {
+            String[] cLines = splits[cIdx];
+            String cValue = line < cLines.length ? cLines[line] : "";
+            // padding is counted in display columns, so wide characters still line up
+            int padding = this.widths[cIdx] - DisplayWidth.of(cValue);
+            switch (this.aligns[cIdx]) {
+            case LEFT:
+                out.append(' ').append(cValue);
+                this.padEnd(out, padding + 1);
+                break;
+            case RIGHT:
+                this.pad(out, padding + 1);
+                out.append(cValue);
+                this.padEnd(out, 1);
+                break;
+            case CENTER:
+                // the same split as StringUtils.center(), with any odd space on the right
+                int before = Math.max(padding + 2, 0) / 2;
+                this.pad(out, before);
+                out.append(cValue);
+                this.padEnd(out, padding + 2 - before);
+                break;
+            }
+        }
+        out.append('\n');
+    }
+
+    private void pad(Appendable out, int count) throws IOException {
+        int remaining = count;
+        for (; remaining > this.slabSpaces; remaining -= this.slabSpaces) {
+            this.slice(out, 0, this.slabSpaces);
+        }
+        if (remaining > 0) {
+            this.slice(out, 0, remaining);
+        }
+    }
+
+    private void padEnd(Appendable out, int count) throws IOException {
+        // the spaces and the separator after them are copied together
+        int remaining = Math.max(count, 0);
+        for (; remaining > this.slabSpaces; remaining -= this.slabSpaces) {
+            this.slice(out, 0, this.slabSpaces);
+        }
+        this.slice(out, this.slabSpaces - remaining, this.slab.length());
+    }
+
+    private void slice(Appendable out, int start, int end) throws IOException {
+        // Writer.append() copies the slice into a new String first, where write() does not
+        if (out instanceof Writer) {
+            ((Writer) out).write(this.slab, start, end - start);
+        } else {
+            out.append(this.slab, start, end);
+        }
+    }
+}
@@ -1,100 +1,88 @@
 package rickwporter.prettytable;
 
-import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.List;
-import java.util.regex.Pattern;
-import java.util.stream.Collectors;
-import org.apache.commons.lang3.StringUtils;
-
-import rickwporter.prettytable.PrettyTable.HorizontalAlign;
+import java.io.IOException;
 
 class TextTableRender implements TableRenderInterface {
-    private static final Pattern NEWLINE = Pattern.compile("\\R");
+    static final String[] EMPTY_LINES = new String[] {""};
+    // the rules and the header row around the rows
+    private static final int HEADER_LINES = 4;
 
-    private String textRow(List<? extends Object> row, List<Integer> maxWidths, List<HorizontalAlign> hAligns) {
-        StringBuilder result = new StringBuilder();
-        List<List<String>> splits = row.stream()
-            .map(c -> Arrays.asList(NEWLINE.split(c.toString())))
-            .collect(Collectors.toList());
-        int maxLines = splits.stream().map(c -> c.size()).max(Integer::compare).get();
-        for (int idx = 0; idx < maxLines; idx++) {
-            List<String> line = new ArrayList<>();
-            for (List<String> column : splits) {
-                line.add(idx < column.size() ? column.get(idx) : "");
-            }
-            result.append(this.textRowLine(line, maxWidths, hAligns));
+    static String[] cellLines(String[][] singles, int column, String text) {
+        // a cell on a single line is passed in an array kept for its column, rather than one of its own
+        if (text.isEmpty()) {
+            return EMPTY_LINES;
         }
-        return result.toString();
+        if (RenderPlan.hasLineBreak(text)) {
+            return RenderPlan.splitLines(text);
+        }
+        singles[column][0] = text;
+        return singles[column];
     }
 
-    private String textRowLine(List<String> row, List<Integer> maxWidths, List<HorizontalAlign> hAligns) {
-        StringBuilder result = new StringBuilder();
-        result.append("|");
-        for (int cIdx = 0; cIdx < row.size(); cIdx++) {
-            String cValue = row.get(cIdx);
-            Integer cWidth = maxWidths.get(cIdx);
-            switch (hAligns.get(cIdx)) {
-            case LEFT:
-                result.append(" " + StringUtils.rightPad(cValue, cWidth) + " ");
-                break;
-            case RIGHT:
-                result.append(" " + StringUtils.leftPad(cValue, cWidth) + " ");
-                break;
-            case CENTER:
-                result.append(StringUtils.center(cValue, cWidth + 2));
-                break;
-            }
-            result.append("|");
+    @Override
+    public String render(PrettyTable table, boolean removeRedundant) {
+        StringBuilder result = RenderBuffers.acquire();
+        try {
+            render(table, removeRedundant, result);
+            return result.toString();
+        } catch (IOException ex) {
+            // nothing to do here
+        } finally {
+            RenderBuffers.recycle(result);
         }
-        result.append("\n");
-        return result.toString();
+        return null;
     }
 
-    private String textRule(List<Integer> maxWidths, Integer maxColumns) {
-        StringBuilder result = new StringBuilder();
-        result.append("+");
-        for (int i = 0; i < maxColumns; i++) {
-            for (int j = 0; j < maxWidths.get(i) + 2; j++) {
-                result.append("-");
-            }
-            result.append("+");
-        }
-        result.append("\n");
-        return result.toString();
+    @Override
+    public void render(PrettyTable table, boolean removeRedundant, Appendable out) throws IOException {
+        render(table.prepare(), removeRedundant, out);
     }
 
     @Override
-    public String render(PrettyTable table, boolean removeRedundant) {
-        List<Integer> maxWidths = table.getMaxWidths();
-        StringBuilder result = new StringBuilder();
-        Integer maxColumns = table.getMaxColumns();
-        List<HorizontalAlign> hAligns = new ArrayList<>(table.getHorizAligns());
-        for (int i = hAligns.size(); i <= maxColumns; i++) {
-            hAligns.add(table.getDefaultHorizAlign());
-        }
+    public void render(RenderPlan plan, boolean removeRedundant, Appendable out) throws IOException {
+        TextLayout layout = plan.getTable().getTextLayout(plan.getWidths(), plan.getHorizAligns());
+        int maxColumns = layout.getColumns();
+        // sized for single line rows, so a buffer being filled is grown at most once more
+        RenderBuffers.reserve(out, (long) layout.getLineLength() * (plan.getRowCount() + HEADER_LINES));
 
-        if (!table.getHeaders().isEmpty()) {
-            result.append(textRule(maxWidths, maxColumns));
-            result.append(textRow(table.getHeaders(), maxWidths, hAligns));
+        // the same arrays are filled in for every row, so nothing is allocated per row or per cell
+        String[][] splits = new String[maxColumns][];
+        String[][] singles = new String[maxColumns][1];
+        if (!plan.getHeaders().isEmpty()) {
+            layout.rule(out);
+            int headers = plan.getHeaders().size();
+            for (int cIdx = 0; cIdx < headers; cIdx++) {
+                splits[cIdx] = plan.getHeaderLines(cIdx);
+            }
+            layout.row(out, splits, headers);
         }
-        result.append(textRule(maxWidths, maxColumns));
-        List<String> lastRow = new ArrayList<>();
-        for (List<Object> row : table.getRows()) {
-            List<String> currentRow = row.stream().map(c -> c.toString()).collect(Collectors.toList());
-            List<String> fullRow = new ArrayList<String>(currentRow);  // make a copy before manipulating
-            if (removeRedundant) {
-                for (int i = 0; i < lastRow.size(); i++) {
-                    if (!lastRow.get(i).equals(currentRow.get(i))) {
-                        break;
-                    }
-                    currentRow.set(i, "");
+        layout.rule(out);
+        // the cell width limit is only applied to the text output, where the nested tables are left whole
+        PrettyTable table = plan.getTable();
+        boolean limited = table.getMaxCellWidth() > 0;
+        String[] lastRow = plan.getPreviousRowText();
+        for (int rIdx = 0; rIdx < plan.getRowCount(); rIdx++) {
+            String[] currentRow = plan.getRowText(rIdx);
+            boolean redundant = removeRedundant;
+            for (int cIdx = 0; cIdx < currentRow.length; cIdx++) {
+                redundant = redundant && cIdx < lastRow.length && lastRow[cIdx].equals(currentRow[cIdx]);
+                String text = currentRow[cIdx];
+                if (redundant || text.isEmpty()) {
+                    splits[cIdx] = EMPTY_LINES;
+                } else if (limited && !plan.isNestedTable(rIdx, cIdx)) {
+                    splits[cIdx] = cellLines(singles, cIdx, table.limitText(text));
+                } else if (RenderPlan.hasLineBreak(text)) {
+                    splits[cIdx] = plan.getLines(rIdx, cIdx);
+                } else {
+                    singles[cIdx][0] = text;
+                    splits[cIdx] = singles[cIdx];
                 }
-                lastRow = fullRow;
             }
-            result.append(textRow(currentRow, maxWidths, hAligns));
+            if (removeRedundant) {
+                lastRow = currentRow;
+            }
+            layout.row(out, splits, currentRow.length);
         }
-        result.append(textRule(maxWidths, maxColumns));
-        return result.toString();
+        layout.rule(out);
     }
 }
@@ -0,0 +1,102 @@
+package rickwporter.prettytable;
+
+import java.util.AbstractList;
+import java.util.List;
+
+/**
+ * The rows handed out by getRow() and getRows(), which pass each change on to the table as it is made. The
+ * column widths and cached output are kept up to date for as long as the caller holds on to the rows, instead
+ * of being dropped every time the rows are handed out.
+ */
+final class TrackedRows extends AbstractList<List<Object>> {
+    private final PrettyTable table;
+    private final List<List<Object>> rows;
+
+    TrackedRows(PrettyTable owner, List<List<Object>> rowList) {
+        this.table = owner;
+        this.rows = rowList;
+    }
+
+    private static List<Object> unwrap(List<Object> row) {
+        // rows put back into the table are stored as they are, rather than as a view of themselves
+        return row instanceof Row ? ((Row) row).cells : row;
+    }
+
+    @Override
+    public int size() {
+        return this.rows.size();
+    }
+
+    @Override
+    public List<Object> get(int row) {
+        return new Row(this.table, this.rows.get(row));
+    }
+
+    @Override
+    public List<Object> set(int row, List<Object> values) {
+        List<Object> old = this.rows.set(row, unwrap(values));
+        this.table.rowsChanged();
+        return old;
+    }
+
+    @Override
+    public void add(int row, List<Object> values) {
+        this.rows.add(row, unwrap(values));
+        this.table.rowsChanged();
+        this.modCount++;
+    }
+
+    @Override
+    public List<Object> remove(int row) {
+        List<Object> old = this.rows.remove(row);
+        this.table.rowsChanged();
+        this.modCount++;
+        return old;
+    }
+
+    /**
+     * Cells of one row, where a replaced cell only updates the width of its own column.
+     */
+    static final class Row extends AbstractList<Object> {
+        private final PrettyTable table;
+        private final List<Object> cells;
+
+        Row(PrettyTable owner, List<Object> row) {
+            this.table = owner;
+            this.cells = row;
+        }
+
+        @Override
+        public int size() {
+            return this.cells.size();
+        }
+
+        @Override
+        public Object get(int column) {
+            return this.cells.get(column);
+        }
+
+        @Override
+        public Object set(int column, Object value) {
+            Object old = this.cells.set(column, value);
+            // typed columns may have converted the value, so the width is that of the cell as stored
+            this.table.cellChanged(column, old, this.cells.get(column));
+            return old;
+        }
+
+        @Override
+        public void add(int column, Object value) {
+            this.cells.add(column, value);
+            this.table.rowsChanged();
+            this.modCount++;
+        }
+
+        @Override
+        public Object remove(int column) {
+            Object old = this.cells.remove(column);
+            this.table.rowsChanged();
+            this.modCount++;
+            return old;
+        }
+    }
+}
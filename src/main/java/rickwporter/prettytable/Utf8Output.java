@@ -0,0 +1,138 @@
+package rickwporter.prettytable;
+
+import java.io.Flushable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * Appendable that encodes the rendered text as UTF-8 straight into a ByteBuffer. With a channel, the buffer
+ * is written out each time it fills up, so the output never needs more memory than the buffer; without one,
+ * the output has to fit in the buffer.
+ */
+final class Utf8Output implements Appendable, Flushable {
+    private static final int ONE_BYTE_LIMIT = 0x80;
+    private static final int TWO_BYTE_LIMIT = 0x800;
+    private static final int TWO_BYTE_LEAD = 0xC0;
+    private static final int THREE_BYTE_LEAD = 0xE0;
+    private static final int FOUR_BYTE_LEAD = 0xF0;
+    private static final int CONTINUATION = 0x80;
+    private static final int CONTINUATION_MASK = 0x3F;
+    private static final int CONTINUATION_BITS = 6;
+    private static final int THREE_BYTE_SHIFT = 2 * CONTINUATION_BITS;
+    private static final int FOUR_BYTE_SHIFT = 3 * CONTINUATION_BITS;
+    private static final int MAX_BYTES_PER_CHAR = 4;
+
+    private final ByteBuffer buffer;
+    private final WritableByteChannel channel;
+    // high surrogate waiting for the rest of its pair, which may come in the next append
+    private char pendingHigh = 0;
+
+    Utf8Output(ByteBuffer target, WritableByteChannel output) {
+        this.buffer = target;
+        this.channel = output;
+    }
+
+    @Override
+    public Appendable append(CharSequence text) throws IOException {
+        // encoded straight from the text, rather than from a String copy of a StringBuilder
+        CharSequence value = text == null ? "null" : text;
+        return this.append(value, 0, value.length());
+    }
+
+    @Override
+    public Appendable append(CharSequence text, int start, int end) throws IOException {
+        CharSequence value = text == null ? "null" : text;
+        int idx = start;
+        while (idx < end) {
+            if (this.pendingHigh == 0 && value.charAt(idx) < ONE_BYTE_LIMIT) {
+                // ASCII runs are copied a byte per char, checking for room once for the whole run
+                int runEnd = Math.min(end, idx + this.room());
+                if (runEnd > idx) {
+                    while (idx < runEnd && value.charAt(idx) < ONE_BYTE_LIMIT) {
+                        this.buffer.put((byte) value.charAt(idx++));
+                    }
+                    continue;
+                }
+            }
+            this.append(value.charAt(idx++));
+        }
+        return this;
+    }
+
+    @Override
+    public Appendable append(char ch) throws IOException {
+        // makes room for the longest encoding when there is a channel to write to
+        this.room();
+        if (this.pendingHigh != 0) {
+            char high = this.pendingHigh;
+            this.pendingHigh = 0;
+            if (Character.isLowSurrogate(ch)) {
+                this.putCodePoint(Character.toCodePoint(high, ch));
+                return this;
+            }
+            // unpaired surrogates are written as '?', the same as String.getBytes() does
+            this.buffer.put((byte) '?');
+        }
+        if (ch < ONE_BYTE_LIMIT) {
+            this.buffer.put((byte) ch);
+        } else if (Character.isHighSurrogate(ch)) {
+            this.pendingHigh = ch;
+        } else if (Character.isLowSurrogate(ch)) {
+            this.buffer.put((byte) '?');
+        } else {
+            this.putCodePoint(ch);
+        }
+        return this;
+    }
+
+    private void putCodePoint(int codePoint) {
+        if (codePoint < ONE_BYTE_LIMIT) {
+            this.buffer.put((byte) codePoint);
+        } else if (codePoint < TWO_BYTE_LIMIT) {
+            this.buffer.put((byte) (TWO_BYTE_LEAD | (codePoint >> CONTINUATION_BITS)));
+            this.buffer.put(continuation(codePoint, 0));
+        } else if (codePoint < Character.MIN_SUPPLEMENTARY_CODE_POINT) {
+            this.buffer.put((byte) (THREE_BYTE_LEAD | (codePoint >> THREE_BYTE_SHIFT)));
+            this.buffer.put(continuation(codePoint, 1));
+            this.buffer.put(continuation(codePoint, 0));
+        } else {
+            this.buffer.put((byte) (FOUR_BYTE_LEAD | (codePoint >> FOUR_BYTE_SHIFT)));
+            this.buffer.put(continuation(codePoint, 2));
+            this.buffer.put(continuation(codePoint, 1));
+            this.buffer.put(continuation(codePoint, 0));
+        }
+    }
+
+    private static byte continuation(int codePoint, int index) {
+        return (byte) (CONTINUATION | ((codePoint >> (index * CONTINUATION_BITS)) & CONTINUATION_MASK));
+    }
+
+    private int room() throws IOException {
+        if (this.channel != null && this.buffer.remaining() < MAX_BYTES_PER_CHAR) {
+            this.drain();
+        }
+        return this.buffer.remaining();
+    }
+
+    private void drain() throws IOException {
+        // without a channel, running out of room is left to the buffer (as a BufferOverflowException)
+        if (this.channel == null) {
+            return;
+        }
+        this.buffer.flip();
+        while (this.buffer.hasRemaining()) {
+            this.channel.write(this.buffer);
+        }
+        this.buffer.clear();
+    }
+
+    @Override
+    public void flush() throws IOException {
+        if (this.pendingHigh != 0) {
+            this.pendingHigh = 0;
+            this.append('?');
+        }
+        this.drain();
+    }
+}
@@ -1,16 +1,46 @@
 package rickwporter.prettytable;
 
+import rickwporter.prettytable.PrettyTable.ColumnType;
 import rickwporter.prettytable.PrettyTable.HorizontalAlign;
 import rickwporter.prettytable.PrettyTable.OutputFormat;
 
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.Assertions;
+import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVRecord;
+import org.apache.commons.lang3.StringUtils;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
 import java.net.URL;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
 
 
 public class PrettyTableTest {
@@ -373,4 +403,1233 @@ public class PrettyTableTest {
         big.setOutputFormat(OutputFormat.JSON);
         Assertions.assertEquals(expected, big.toString());
     }
+
+    @Test
+    public void testWriteTo() throws Exception {
+        PrettyTable table = new PrettyTable("Col1", "Col2", "Col3", "Col4");
+        table.addRow("A", "B", "C", "D");
+        table.addRow("A", "B", "C", "Z");
+        table.addRow("A", "B", "F", "E");
+
+        for (OutputFormat format : OutputFormat.values()) {
+            for (boolean removeRedundant : new boolean[] {true, false}) {
+                String expected = table.formattedString(format, removeRedundant);
+
+                StringWriter writer = new StringWriter();
+                table.writeTo(writer, format, removeRedundant);
+                Assertions.assertEquals(expected, writer.toString());
+
+                ByteArrayOutputStream stream = new ByteArrayOutputStream();
+                table.writeTo(stream, format, removeRedundant);
+                Assertions.assertEquals(expected, new String(stream.toByteArray(), StandardCharsets.UTF_8));
+            }
+        }
+
+        // default is to remove redundant entries
+        StringWriter writer = new StringWriter();
+        table.writeTo(writer, OutputFormat.TEXT);
+        Assertions.assertEquals(table.formattedString(OutputFormat.TEXT), writer.toString());
+        ByteArrayOutputStream stream = new ByteArrayOutputStream();
+        table.writeTo(stream, OutputFormat.HTML);
+        Assertions.assertEquals(table.formattedString(OutputFormat.HTML), stream.toString("UTF-8"));
+    }
+
+    @Test
+    public void testMaxWidths() {
+        PrettyTable table = new PrettyTable("A", "Column B");
+        Assertions.assertEquals(Arrays.asList(1, 8), table.getMaxWidths());
+        table.addRow("abc", "d");
+        Assertions.assertEquals(Arrays.asList(3, 8), table.getMaxWidths());
+        table.addRow("multi\nline\r\ncell", "wider than header");
+        Assertions.assertEquals(Arrays.asList(5, 17), table.getMaxWidths());
+
+        // sorting does not change the widths
+        table.sortByIndex(1);
+        Assertions.assertEquals(Arrays.asList(5, 17), table.getMaxWidths());
+
+        // replacing the widest cell shrinks the column
+        table.setRow(1, "ab", "c");
+        Assertions.assertEquals(Arrays.asList(3, 8), table.getMaxWidths());
+        table.setRow(1, "abcdefgh", "c");
+        Assertions.assertEquals(Arrays.asList(8, 8), table.getMaxWidths());
+
+        // changes made through the returned rows are picked up
+        table.getRows().get(1).set(0, "x");
+        Assertions.assertEquals(Arrays.asList(3, 8), table.getMaxWidths());
+        table.getRow(0).set(1, "much wider than header");
+        Assertions.assertEquals(Arrays.asList(3, 22), table.getMaxWidths());
+
+        // nested tables are measured as they are now, not when added
+        PrettyTable nested = new PrettyTable("X");
+        table.addRow("n", nested);
+        Assertions.assertEquals(Arrays.asList(3, 22), table.getMaxWidths());
+        nested.addRow("a really long nested value");
+        Assertions.assertEquals(Arrays.asList(3, 30), table.getMaxWidths());
+
+        // rows kept by the caller and changed after the next render are picked up too
+        List<Object> kept = table.getRow(0);
+        List<List<Object>> keptRows = table.getRows();
+        table.setOutputCaching(true);
+        String before = table.toString();
+        kept.set(0, "a wider name");
+        Assertions.assertEquals(Arrays.asList(12, 30), table.getMaxWidths());
+        Assertions.assertNotEquals(before, table.toString());
+        Assertions.assertTrue(table.toString().contains("| a wider name |"));
+        kept.set(0, "abc");
+        Assertions.assertEquals(Arrays.asList(3, 30), table.getMaxWidths());
+        Assertions.assertEquals(before, table.toString());
+        keptRows.add(Arrays.asList("longest of all", "y"));
+        Assertions.assertEquals(Arrays.asList(14, 30), table.getMaxWidths());
+        keptRows.remove(3);
+        Assertions.assertEquals(Arrays.asList(3, 30), table.getMaxWidths());
+        Assertions.assertEquals(before, table.toString());
+    }
+
+    @Test
+    public void testRenderPlan() {
+        final int[] calls = new int[] {0};
+        Object counted = new Object() {
+            @Override
+            public String toString() {
+                calls[0]++;
+                return "counted\nvalue";
+            }
+        };
+        PrettyTable table = createBasicTable();
+        table.addRow("x", counted, "z");
+        Map<OutputFormat, String> expected = new HashMap<>();
+        for (OutputFormat format : OutputFormat.values()) {
+            expected.put(format, table.formattedString(format));
+        }
+
+        calls[0] = 0;
+        RenderPlan plan = table.prepare();
+        for (OutputFormat format : OutputFormat.values()) {
+            Assertions.assertEquals(expected.get(format), plan.formattedString(format));
+        }
+        Assertions.assertEquals(1, calls[0]);
+        Assertions.assertArrayEquals(new String[] {"counted", "value"}, plan.getLines(3, 1));
+
+        // the plan is a snapshot, so later rows are not included
+        table.addRow("a", "b", "c");
+        Assertions.assertEquals(4, plan.getRowCount());
+        Assertions.assertEquals(expected.get(OutputFormat.CSV), plan.formattedString(OutputFormat.CSV, false));
+    }
+
+    @Test
+    public void testSplitLines() {
+        for (String text : new String[] {"", "a", "\n", "\n\n", "a\r\nb", "a\rb\n", "\na\n\nb\n\n", "a\u2028b"}) {
+            Assertions.assertArrayEquals(text.split("\\R"), RenderPlan.splitLines(text));
+        }
+    }
+
+    @Test
+    public void testHtmlEscaped() {
+        PrettyTable table = new PrettyTable("<b>", "R&D");
+        table.addRow("x < y", "fish & chips > nothing");
+        String expected = "<table>\n"
+            + "    <thead>\n"
+            + "        <tr>\n"
+            + "            <th>&lt;b&gt;</th>\n"
+            + "            <th>R&amp;D</th>\n"
+            + "        </tr>\n"
+            + "    </thead>\n"
+            + "    <tbody>\n"
+            + "        <tr>\n"
+            + "            <td>x &lt; y</td>\n"
+            + "            <td>fish &amp; chips &gt; nothing</td>\n"
+            + "        </tr>\n"
+            + "    </tbody>\n"
+            + "</table>\n";
+        Assertions.assertEquals(expected, table.formattedString(OutputFormat.HTML));
+    }
+
+    @Test
+    public void testJsonTypes() {
+        PrettyTable table = new PrettyTable("Type", "Value");
+        table.addRow("long", 12345678901L);
+        table.addRow("double", 1.5);
+        table.addRow("nan", Double.NaN);
+        table.addRow("decimal", new BigDecimal("0.10"));
+        table.addRow("boolean", true);
+        table.addRow("null", null);
+        table.addRow("numeric", "+007");
+        table.addRow("too big", "2147483648");
+        table.addRow("escaped", "tab\there \\ \"quoted\"\u0001");
+        String expected = "[\n"
+            + "    [\n"
+            + "        \"Type\",\n"
+            + "        \"Value\"\n"
+            + "    ],\n"
+            + jsonEntry("long", "12345678901") + ",\n"
+            + jsonEntry("double", "1.5") + ",\n"
+            + jsonEntry("nan", "\"NaN\"") + ",\n"
+            + jsonEntry("decimal", "0.10") + ",\n"
+            + jsonEntry("boolean", "true") + ",\n"
+            + jsonEntry("null", "null") + ",\n"
+            + jsonEntry("numeric", "7") + ",\n"
+            + jsonEntry("too big", "\"2147483648\"") + ",\n"
+            + jsonEntry("escaped", "\"tab\\there \\\\ \\\"quoted\\\"\\u0001\"") + "\n"
+            + "]\n";
+        Assertions.assertEquals(expected, table.formattedString(OutputFormat.JSON));
+
+        // null is a blank cell in other formats
+        PrettyTable blanks = new PrettyTable("Type", "Value");
+        blanks.addRow("null", null);
+        Assertions.assertEquals("Type,Value\nnull,\n", blanks.formattedString(OutputFormat.CSV));
+    }
+
+    String jsonEntry(String type, String value) {
+        return "    {\n        \"Type\": \"" + type + "\",\n        \"Value\": " + value + "\n    }";
+    }
+
+    @Test
+    public void testJsonInteger() {
+        for (String text : new String[] {"0", "-0", "+0", "007", "-007", "+5", "2147483647", "-2147483648"}) {
+            Assertions.assertTrue(JsonTableRender.isJsonInteger(text), text);
+        }
+        for (String text : new String[] {"", "-", "+", "1.0", "0x10", "2147483648", "-2147483649", "1 ", "a1"}) {
+            Assertions.assertFalse(JsonTableRender.isJsonInteger(text), text);
+        }
+    }
+
+    @Test
+    public void testSortKeys() {
+        PrettyTable table = new PrettyTable("Name", "Size", "Mixed");
+        table.addRow("b", 10L, "1e1");
+        table.addRow("a", 9, "abc");
+        table.addRow("c", 100, "-2.5");
+        table.addRow("d", 9, null);
+
+        // all numeric column, ties keep their order
+        table.sortByHeader("Size");
+        Assertions.assertEquals(Arrays.asList("a", "d", "b", "c"), getColumn(table, 0));
+
+        // numbers compared as numbers, and text compared as text
+        table.sortByHeader("Mixed");
+        Assertions.assertEquals(Arrays.asList("d", "c", "b", "a"), getColumn(table, 0));
+
+        // explicit comparator takes the place of the default ordering
+        table.setColumnComparator(1, (o1, o2) -> Long.compare(((Number) o2).longValue(), ((Number) o1).longValue()));
+        table.sortByIndex(1, 0);
+        Assertions.assertEquals(Arrays.asList("c", "b", "a", "d"), getColumn(table, 0));
+        table.setColumnComparator(1, null);
+        table.sortByIndex(1, 0);
+        Assertions.assertEquals(Arrays.asList("a", "d", "b", "c"), getColumn(table, 0));
+
+        Assertions.assertThrows(ArrayIndexOutOfBoundsException.class, () -> table.sortByIndex(-1));
+        Assertions.assertThrows(ArrayIndexOutOfBoundsException.class, () -> table.sortByIndex(3));
+    }
+
+    @Test
+    public void testSortLarge() {
+        // compare against sorting with the original comparator
+        PrettyTable table = new PrettyTable("A", "B");
+        Random random = new Random(42);
+        for (int idx = 0; idx < 5000; idx++) {
+            Object value = random.nextBoolean() ? (Object) random.nextInt(100) : "s" + random.nextInt(100);
+            table.addRow(value, idx);
+        }
+        List<List<Object>> expected = new ArrayList<>(table.getRows());
+        expected.sort((row1, row2) -> {
+            String s1 = row1.get(0).toString();
+            String s2 = row2.get(0).toString();
+            try {
+                return Float.compare(Float.parseFloat(s1), Float.parseFloat(s2));
+            } catch (NumberFormatException ex) {
+                return s1.compareTo(s2);
+            }
+        });
+        table.sortByIndex(0);
+        Assertions.assertEquals(expected, table.getRows());
+    }
+
+    @Test
+    public void testIsNumber() {
+        for (String text : new String[] {"1", "-1", "+1.5", " 2 ", "1.", ".5", "1e5", "1E-5f", "2d", "NaN", "-Infinity",
+            "0x1p3"}) {
+            Assertions.assertTrue(RowSorter.isNumber(text), text);
+        }
+        for (String text : new String[] {"", " ", ".", "e5", "1e", "1.2.3", "NaNa", "abc", "0x", "1f2", "--1"}) {
+            Assertions.assertFalse(RowSorter.isNumber(text), text);
+        }
+    }
+
+    List<Object> getColumn(PrettyTable table, int column) {
+        List<Object> result = new ArrayList<>();
+        for (int row = 0; row < table.getRowCount(); row++) {
+            result.add(table.getCell(row, column));
+        }
+        return result;
+    }
+
+    PrettyTable createLargeTable(int rows) {
+        PrettyTable table = new PrettyTable("Text", "Number", "Mixed", "Index");
+        Random random = new Random(7);
+        for (int idx = 0; idx < rows; idx++) {
+            Object mixed = random.nextBoolean() ? (Object) random.nextInt(1000) : "m" + random.nextInt(1000);
+            table.addRow("t" + random.nextInt(5000), random.nextInt(200), mixed, idx);
+        }
+        return table;
+    }
+
+    @Test
+    public void testParallel() {
+        PrettyTable sequential = createLargeTable(3 * PrettyTable.PARALLEL_THRESHOLD);
+        PrettyTable parallel = createLargeTable(3 * PrettyTable.PARALLEL_THRESHOLD);
+        parallel.setParallelism(4);
+        Assertions.assertEquals(4, parallel.getParallelism());
+
+        sequential.sortByIndex(1, 2);
+        parallel.sortByIndex(1, 2);
+        Assertions.assertEquals(sequential.getRows(), parallel.getRows());
+        sequential.sortByHeader("Mixed");
+        parallel.sortByHeader("Mixed");
+        Assertions.assertEquals(sequential.getRows(), parallel.getRows());
+
+        // setting the width cap drops the widths, so these are full rescans, in parallel for the one table
+        sequential.setMaxCellWidth(sequential.getMaxCellWidth());
+        parallel.setMaxCellWidth(parallel.getMaxCellWidth());
+        Assertions.assertEquals(sequential.getMaxWidths(), parallel.getMaxWidths());
+        Assertions.assertEquals(sequential.formattedString(OutputFormat.TEXT), parallel.formattedString(OutputFormat.TEXT));
+
+        // the pool the table made is shut down once replaced, but one passed in is left to its owner
+        ForkJoinPool owned = parallel.getPool();
+        parallel.setParallelism(4);
+        Assertions.assertSame(owned, parallel.getPool());
+        parallel.setParallelism(2);
+        Assertions.assertTrue(owned.isShutdown());
+        owned = parallel.getPool();
+        ForkJoinPool shared = new ForkJoinPool(2);
+        parallel.setParallelism(shared);
+        Assertions.assertTrue(owned.isShutdown());
+        parallel.setParallelism(1);
+        Assertions.assertEquals(1, parallel.getParallelism());
+        Assertions.assertFalse(shared.isShutdown());
+        shared.shutdown();
+    }
+
+    @Test
+    public void testColumnTypes() {
+        PrettyTable rowTable = new PrettyTable("Name", "Count", "Total", "Ratio", "Other");
+        PrettyTable typedTable = new PrettyTable("Name", "Count", "Total", "Ratio", "Other");
+        typedTable.setColumnTypes(ColumnType.STRING, ColumnType.INT, ColumnType.LONG, ColumnType.DOUBLE,
+            ColumnType.OBJECT);
+        PrettyTable nested = new PrettyTable("Nested");
+        for (PrettyTable table : Arrays.asList(rowTable, typedTable)) {
+            table.addRow("b", 3, 30000000000L, 0.5, "x");
+            table.addRow("a", 12, -4L, Double.NaN, null);
+            table.addRow("b", null, 7L, 2.25, nested);
+            table.addRow("c", -1, null, null, true);
+        }
+        Assertions.assertEquals(Arrays.asList(ColumnType.STRING, ColumnType.INT, ColumnType.LONG,
+            ColumnType.DOUBLE, ColumnType.OBJECT), typedTable.getColumnTypes());
+        Assertions.assertTrue(rowTable.getColumnTypes().isEmpty());
+        Assertions.assertEquals(rowTable.getRows(), typedTable.getRows());
+        Assertions.assertEquals(12, typedTable.getCell(1, 1));
+        Assertions.assertEquals(-4L, typedTable.getRow(1).get(2));
+
+        for (OutputFormat format : OutputFormat.values()) {
+            for (boolean removeRedundant : new boolean[] {true, false}) {
+                Assertions.assertEquals(
+                    rowTable.formattedString(format, removeRedundant),
+                    typedTable.formattedString(format, removeRedundant));
+            }
+        }
+
+        rowTable.sortByHeader("Count");
+        typedTable.sortByHeader("Count");
+        Assertions.assertEquals(rowTable.getRows(), typedTable.getRows());
+        rowTable.sortByIndex(0, 3);
+        typedTable.sortByIndex(0, 3);
+        Assertions.assertEquals(rowTable.getRows(), typedTable.getRows());
+        Assertions.assertEquals(rowTable.getMaxWidths(), typedTable.getMaxWidths());
+
+        // primitive cells are converted to the column type, widths follow the changes
+        typedTable.setCell(0, 1, 123456789);
+        typedTable.setCell(0, 2, 5);
+        typedTable.setCell(0, 3, 1.5);
+        Assertions.assertEquals(Arrays.asList("a", 123456789, 5L, 1.5), typedTable.getRow(0).subList(0, 4));
+        Assertions.assertEquals(9, typedTable.getMaxWidthForColumn(1));
+        typedTable.setCell(0, 1, 1);
+        Assertions.assertEquals(5, typedTable.getMaxWidthForColumn(1));
+        typedTable.getRow(0).set(1, 22);
+        Assertions.assertEquals(22, typedTable.getCell(0, 1));
+
+        typedTable.addRow();
+        Assertions.assertEquals(Arrays.asList(null, null, null, null, null), typedTable.getRow(4));
+        typedTable.setCell(4, 1, 8);
+        Assertions.assertEquals(8, typedTable.getCell(4, 1));
+
+        Assertions.assertThrows(IllegalArgumentException.class, () -> typedTable.addRow("d", "not a number"));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> typedTable.addRow("d", 1, 2, 3, 4, 5));
+        // values that are not whole numbers, or do not fit, are rejected rather than narrowed
+        typedTable.setCell(4, 1, 3.0);
+        typedTable.setCell(4, 2, new BigDecimal("40.00"));
+        Assertions.assertEquals(Arrays.asList(3, 40L), typedTable.getRow(4).subList(1, 3));
+        for (Object value : Arrays.asList(3.7, Double.NaN, 1L << 40, 1e10, new BigDecimal("2.5"))) {
+            Assertions.assertThrows(IllegalArgumentException.class, () -> typedTable.setCell(4, 1, value));
+        }
+        for (Object value : Arrays.asList(0.5f, Double.POSITIVE_INFINITY, 0x1p63, BigInteger.ONE.shiftLeft(63))) {
+            Assertions.assertThrows(IllegalArgumentException.class, () -> typedTable.setCell(4, 2, value));
+        }
+        typedTable.setCell(4, 1, Integer.MIN_VALUE);
+        typedTable.setCell(4, 2, BigInteger.valueOf(Long.MAX_VALUE));
+        Assertions.assertEquals(Arrays.asList(Integer.MIN_VALUE, Long.MAX_VALUE), typedTable.getRow(4).subList(1, 3));
+        typedTable.setCell(4, 1, 8);
+
+        typedTable.setColumnTypes();
+        Assertions.assertTrue(typedTable.getColumnTypes().isEmpty());
+        Assertions.assertEquals(8, typedTable.getCell(4, 1));
+        Assertions.assertEquals(5, typedTable.getRowCount());
+
+        // the widths are those of the cells as stored, after they were converted to the column type
+        PrettyTable doubles = new PrettyTable("N", "D");
+        doubles.setColumnTypes(ColumnType.STRING, ColumnType.DOUBLE);
+        doubles.addRow("x", 1.5);
+        Assertions.assertEquals(Arrays.asList(1, 3), doubles.getMaxWidths());
+        doubles.addRow("y", 12345);
+        Assertions.assertEquals(Arrays.asList(1, 7), doubles.getMaxWidths());
+        Assertions.assertTrue(doubles.toString().contains("| 12345.0 |"));
+        doubles.setCell(0, 1, Long.valueOf(100000000L));
+        Assertions.assertEquals(Arrays.asList(1, 7), doubles.getMaxWidths());
+        doubles.setRow(1, "z", 2);
+        Assertions.assertEquals(Arrays.asList(1, 5), doubles.getMaxWidths());
+        Assertions.assertTrue(doubles.toString().contains("| 1.0E8 |"));
+
+        // rows added in one step are filled in without boxing, and measured from the typed columns
+        Assertions.assertEquals(2, doubles.addRows(2));
+        Assertions.assertEquals(Arrays.asList(null, null), doubles.getRow(3));
+        doubles.setCell(3, 1, -1234567.25);
+        Assertions.assertEquals(Arrays.asList(1, 11), doubles.getMaxWidths());
+        Assertions.assertTrue(doubles.toString().contains("| -1234567.25 |"));
+        PrettyTable longs = new PrettyTable("L");
+        longs.setColumnTypes(ColumnType.LONG);
+        Assertions.assertEquals(0, longs.addRows(3));
+        longs.setCell(0, 0, Long.MIN_VALUE);
+        Assertions.assertEquals(20, longs.getMaxWidthForColumn(0));
+        longs.setCell(0, 0, -9L);
+        longs.setCell(1, 0, 100L);
+        Assertions.assertEquals(3, longs.getMaxWidthForColumn(0));
+        longs.setMaxCellWidth(5);
+        longs.setCell(2, 0, 1234567890123L);
+        Assertions.assertEquals(5, longs.getMaxWidthForColumn(0));
+        longs.setCell(2, 0, 7L);
+        Assertions.assertEquals(3, longs.getMaxWidthForColumn(0));
+        Assertions.assertEquals(Arrays.asList(Arrays.asList(-9L), Arrays.asList(100L), Arrays.asList(7L)),
+            longs.getRows());
+        PrettyTable plain = new PrettyTable("A", "B");
+        Assertions.assertEquals(0, plain.addRows(2));
+        plain.setCell(1, 1, 42);
+        Assertions.assertEquals(Arrays.asList(null, 42), plain.getRow(1));
+        Assertions.assertEquals(Arrays.asList(1, 2), plain.getMaxWidths());
+    }
+
+    @Test
+    public void testStreaming() throws Exception {
+        PrettyTable table = new PrettyTable("Name", "Count", "Note");
+        StringBuilder output = new StringBuilder();
+        StreamingPrettyTable streaming = new StreamingPrettyTable(output, "Name", "Count", "Note");
+        streaming.setSampleSize(3);
+        List<Object[]> rows = Arrays.asList(
+            new Object[] {"alpha", 1, "first"},
+            new Object[] {"alpha", 22, "two\nlines"},
+            new Object[] {"gamma", 333, null},
+            new Object[] {"delta", 4, "four"});
+        for (Object[] row : rows.subList(0, 3)) {
+            table.addRow(row);
+        }
+        streaming.addRows(rows.subList(0, 2).iterator());
+        Assertions.assertEquals("", output.toString());
+        Assertions.assertTrue(streaming.getColumnWidths().isEmpty());
+
+        // the widths are fixed by the third row, and everything so far is written
+        streaming.addRow(rows.get(2));
+        Assertions.assertEquals(Arrays.asList(5, 5, 5), streaming.getColumnWidths());
+        String expected = table.formattedString(OutputFormat.TEXT);
+        Assertions.assertEquals(expected.substring(0, expected.lastIndexOf('\n', expected.length() - 2) + 1),
+            output.toString());
+        streaming.close();
+        Assertions.assertEquals(expected, output.toString());
+        Assertions.assertEquals(3, streaming.getRowCount());
+        Assertions.assertThrows(IllegalStateException.class, () -> streaming.addRow("late"));
+
+        // later cells that are too wide are truncated or wrapped
+        StringBuilder truncated = new StringBuilder();
+        StreamingPrettyTable narrow = new StreamingPrettyTable(truncated, "Id", "Text");
+        narrow.setColumnWidths(2, 6);
+        narrow.setHorizAligns(HorizontalAlign.LEFT, HorizontalAlign.LEFT);
+        narrow.addRow(1, "abcdefghij");
+        Assertions.assertEquals(String.join("\n",
+            "+----+--------+",
+            "| Id | Text   |",
+            "+----+--------+",
+            "| 1  | abc... |",
+            ""), truncated.toString());
+        narrow.setOverflow(CellOverflow.WRAP);
+        narrow.addRow(2, "abcdefghij");
+        narrow.close();
+        Assertions.assertTrue(truncated.toString().endsWith(String.join("\n",
+            "| 2  | abcdef |",
+            "|    | ghij   |",
+            "+----+--------+",
+            "")));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> {
+            StreamingPrettyTable wide = new StreamingPrettyTable(new StringBuilder(), "One");
+            wide.setColumnWidths(3);
+            wide.addRow(1, 2);
+        });
+    }
+
+    @Test
+    public void testWindow() {
+        PrettyTable table = new PrettyTable("Group", "Name", "Value");
+        table.addRow("a", "first", 1);
+        table.addRow("a", "second", 22);
+        table.addRow("a", "third", 333);
+        table.addRow("b", "a much longer name", 4);
+        table.addRow("b", "fifth", 5);
+        List<String> full = Arrays.asList(table.formattedString(OutputFormat.TEXT, true).split("\n"));
+        for (int from = 0; from < table.getRowCount(); from += 2) {
+            int to = Math.min(table.getRowCount(), from + 2);
+            List<String> page = Arrays.asList(table.formattedString(OutputFormat.TEXT, true, from, to).split("\n"));
+            // same widths as the whole table, and the redundant cells continue from the previous page
+            Assertions.assertEquals(full.subList(0, 3), page.subList(0, 3));
+            Assertions.assertEquals(full.subList(3 + from, 3 + to), page.subList(3, page.size() - 1));
+            Assertions.assertEquals(full.get(full.size() - 1), page.get(page.size() - 1));
+        }
+        Assertions.assertEquals(table.formattedString(OutputFormat.CSV),
+            table.formattedString(OutputFormat.CSV, true, 0, table.getRowCount()));
+        Assertions.assertEquals("Group,Name,Value\nb,fifth,5\n",
+            table.formattedString(OutputFormat.CSV, true, 4, 5));
+        Assertions.assertTrue(table.formattedString(OutputFormat.HTML, true, 1, 2).contains("<td></td>"));
+        Assertions.assertFalse(table.formattedString(OutputFormat.HTML, false, 1, 2).contains("<td></td>"));
+        Assertions.assertFalse(table.formattedString(OutputFormat.HTML, true, 3, 4).contains("<td></td>"));
+        Assertions.assertTrue(table.formattedString(OutputFormat.JSON, true, 2, 2).endsWith("    ]\n]\n"));
+        Assertions.assertThrows(IndexOutOfBoundsException.class, () -> table.prepare(3, 6));
+        Assertions.assertThrows(IndexOutOfBoundsException.class, () -> table.prepare(3, 2));
+    }
+
+    @Test
+    public void testNestedText() {
+        PrettyTable grandChild = new PrettyTable("Deep");
+        grandChild.addRow("x");
+        PrettyTable child = new PrettyTable("Child");
+        child.addRow(grandChild);
+        PrettyTable parent = new PrettyTable("Parent", "Other");
+        parent.addRow(child, "y");
+
+        String first = parent.toString();
+        // the nested output is only rendered again after a change
+        String childText = child.getNestedText();
+        Assertions.assertSame(childText, child.getNestedText());
+        Assertions.assertEquals(first, parent.toString());
+        Assertions.assertSame(childText, child.getNestedText());
+
+        long version = parent.getVersion();
+        grandChild.addRow("a longer value");
+        Assertions.assertTrue(parent.getVersion() > version);
+        Assertions.assertNotSame(childText, child.getNestedText());
+        Assertions.assertTrue(parent.toString().contains("a longer value"));
+
+        version = parent.getVersion();
+        child.setHorizAlign(0, HorizontalAlign.LEFT);
+        Assertions.assertTrue(parent.getVersion() > version);
+        child.getHeaders().set(0, "Renamed");
+        String renamed = parent.toString();
+        Assertions.assertTrue(renamed.contains("Renamed"));
+        child.setOutputFormat(OutputFormat.CSV);
+        Assertions.assertNotEquals(renamed, parent.toString());
+
+        // replacing the nested table still gives a newer version
+        version = parent.getVersion();
+        parent.setRow(0, "plain", "y");
+        Assertions.assertTrue(parent.getVersion() > version);
+    }
+
+    @Test
+    public void testOutputCache() {
+        PrettyTable table = new PrettyTable("Name", "Value");
+        table.addRow("one", 1);
+        Assertions.assertFalse(table.isOutputCaching());
+        table.setOutputCaching(true);
+        Assertions.assertTrue(table.isOutputCaching());
+
+        String text = table.toString();
+        Assertions.assertSame(text, table.toString());
+        Assertions.assertSame(text, table.formattedString(OutputFormat.TEXT, true));
+        Assertions.assertNotSame(text, table.formattedString(OutputFormat.TEXT, false));
+        Assertions.assertEquals(2, table.getCacheHits());
+        Assertions.assertEquals(2, table.getCacheMisses());
+
+        // every change drops the cached output
+        table.addRow("two", 2);
+        Assertions.assertTrue(table.toString().contains("two"));
+        table.sortByHeader("Value");
+        table.toString();
+        table.setHorizAligns(HorizontalAlign.LEFT);
+        table.toString();
+        table.setOutputFormat(OutputFormat.CSV);
+        Assertions.assertEquals("Name,Value\none,1\ntwo,2\n", table.toString());
+        table.getHeaders().set(0, "Label");
+        Assertions.assertEquals("Label,Value\none,1\ntwo,2\n", table.toString());
+        Assertions.assertEquals(2, table.getCacheHits());
+        Assertions.assertEquals(7, table.getCacheMisses());
+
+        table.setOutputCaching(false);
+        Assertions.assertEquals(0, table.getCacheHits());
+        Assertions.assertEquals(table.toString(), table.toString());
+    }
+    /**
+     * Renderer found through META-INF/services in the test resources.
+     */
+    public static final class MarkdownProvider implements TableRenderProvider {
+        @Override
+        public String getFormatName() {
+            return "markdown";
+        }
+
+        @Override
+        public TableRenderInterface getRenderer() {
+            return (table, removeRedundant) -> "| " + String.join(" | ", table.getHeaders()) + " |\n";
+        }
+    }
+
+    @Test
+    public void testRenderers() {
+        Assertions.assertSame(TableRenderers.get(OutputFormat.TEXT), TableRenderers.get("text"));
+        Assertions.assertSame(TableRenderers.get(OutputFormat.JSON), PrettyTable.rendererFor(OutputFormat.JSON));
+        Assertions.assertTrue(TableRenderers.getNames().containsAll(Arrays.asList("CSV", "HTML", "MARKDOWN")));
+
+        PrettyTable table = new PrettyTable("One", "Two");
+        table.addRow(1, 2);
+        Assertions.assertEquals("| One | Two |\n", table.formattedString("Markdown", true));
+        Assertions.assertEquals(table.formattedString(OutputFormat.CSV), table.formattedString("csv", true));
+
+        TableRenderers.register("count", (t, removeRedundant) -> Integer.toString(t.getRowCount()));
+        Assertions.assertEquals("1", table.formattedString("COUNT", false));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> TableRenderers.get("unknown"));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> TableRenderers.register("Html", null));
+    }
+
+    @Test
+    public void testConcurrent() throws Exception {
+        ConcurrentPrettyTable table = new ConcurrentPrettyTable("Thread", "Index");
+        table.setHorizAligns(HorizontalAlign.LEFT, HorizontalAlign.RIGHT);
+        int threads = 8;
+        int rowsPerThread = 2000;
+        List<Thread> workers = new ArrayList<>();
+        for (int tIdx = 0; tIdx < threads; tIdx++) {
+            int thread = tIdx;
+            workers.add(new Thread(() -> {
+                for (int rIdx = 0; rIdx < rowsPerThread; rIdx++) {
+                    table.addRow(thread, rIdx);
+                }
+            }));
+        }
+        workers.forEach(Thread::start);
+        // snapshots taken while the rows are added never skip a row added before one they hold, so each one
+        // starts with the rows of the one before it
+        List<List<Object>> previous = new ArrayList<>();
+        while (workers.stream().anyMatch(Thread::isAlive)) {
+            List<List<Object>> partial = new ArrayList<>(table.snapshot().getRows());
+            Assertions.assertEquals(previous, partial.subList(0, previous.size()));
+            Map<Object, Integer> counts = new HashMap<>();
+            for (List<Object> row : partial) {
+                int expected = counts.getOrDefault(row.get(0), 0);
+                Assertions.assertEquals(expected, row.get(1));
+                counts.put(row.get(0), expected + 1);
+            }
+            previous = partial;
+        }
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        List<List<Object>> complete = new ArrayList<>(table.snapshot().getRows());
+        Assertions.assertEquals(previous, complete.subList(0, previous.size()));
+
+        PrettyTable snapshot = table.snapshot();
+        Assertions.assertEquals(threads * rowsPerThread, table.getRowCount());
+        Assertions.assertEquals(threads * rowsPerThread, snapshot.getRowCount());
+        Assertions.assertEquals(Arrays.asList(HorizontalAlign.LEFT, HorizontalAlign.RIGHT), snapshot.getHorizAligns());
+        snapshot.sortByIndex(0, 1);
+        for (int rIdx = 0; rIdx < snapshot.getRowCount(); rIdx++) {
+            Assertions.assertEquals(Arrays.asList(rIdx / rowsPerThread, rIdx % rowsPerThread), snapshot.getRow(rIdx));
+        }
+        Assertions.assertEquals(table.snapshot().toString(), table.toString());
+
+        // a snapshot can be edited without changing the table it was taken from
+        ConcurrentPrettyTable source = new ConcurrentPrettyTable("Name", "Count");
+        source.addRow("b", 2);
+        source.addRow("a", 1);
+        String before = source.toString();
+        PrettyTable edited = source.snapshot();
+        edited.setCell(0, 0, "changed");
+        edited.setCell(1, 1, 100);
+        Assertions.assertEquals(before, source.toString());
+        Assertions.assertEquals(Arrays.asList("b", 2), source.snapshot().getRow(0));
+    }
+
+    @Test
+    public void testTopK() {
+        PrettyTable table = createLargeTable(5000);
+        PrettyTable sorted = createLargeTable(5000);
+        List<List<Object>> original = new ArrayList<>(table.getRows());
+        sorted.sortByHeader("Number", "Mixed");
+        for (int limit : new int[] {0, 1, 50, 4999, 5000, 6000}) {
+            PrettyTable top = table.topK(limit, "Number", "Mixed");
+            Assertions.assertEquals(sorted.getRows().subList(0, Math.min(limit, 5000)), top.getRows());
+        }
+        // ties keep their original order, and the table itself is not sorted
+        sorted = createLargeTable(5000);
+        sorted.sortByIndex(1);
+        Assertions.assertEquals(sorted.getRows().subList(0, 300), table.topKByIndex(300, 1).getRows());
+        Assertions.assertEquals(original, table.getRows());
+
+        PrettyTable first = table.limit(3);
+        Assertions.assertEquals(original.subList(0, 3), first.getRows());
+        Assertions.assertEquals(table.getHeaders(), first.getHeaders());
+        Assertions.assertEquals(first.formattedString(OutputFormat.JSON),
+            table.formattedString(OutputFormat.JSON, true, 0, 3));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> table.limit(-1));
+        Assertions.assertThrows(ArrayIndexOutOfBoundsException.class, () -> table.topKByIndex(3, 7));
+    }
+
+    @Test
+    public void testFromCsv() throws Exception {
+        Path path = Files.createTempFile("prettytable", ".csv");
+        try {
+            String csv = "\uFEFFName,Count,Note\r\n"
+                + "beta,2,plain\n"
+                + "\n"
+                + "alpha,10,\"quoted, with \"\"quotes\"\"\"\r"
+                + "gamma,1,\"two\nlines\"\n"
+                + "delta,3\n";
+            Files.write(path, csv.getBytes(StandardCharsets.UTF_8));
+            PrettyTable table = PrettyTable.fromCsv(path);
+            Assertions.assertEquals(Arrays.asList("Name", "Count", "Note"), table.getHeaders());
+            Assertions.assertEquals(4, table.getRowCount());
+            Assertions.assertEquals("quoted, with \"quotes\"", table.getCell(1, 2));
+            Assertions.assertEquals("two\nlines", table.getCell(2, 2));
+            Assertions.assertEquals(Arrays.asList("delta", "3"), table.getRow(3));
+
+            PrettyTable expected = new PrettyTable("Name", "Count", "Note");
+            expected.addRow("beta", "2", "plain");
+            expected.addRow("alpha", "10", "quoted, with \"quotes\"");
+            expected.addRow("gamma", "1", "two\nlines");
+            expected.addRow("delta", "3");
+            for (OutputFormat format : OutputFormat.values()) {
+                Assertions.assertEquals(expected.formattedString(format), table.formattedString(format));
+            }
+            Assertions.assertEquals(expected.formattedString(OutputFormat.CSV),
+                PrettyTable.fromCsv(path).formattedString(OutputFormat.CSV));
+
+            // a row that is held on to stays with its record as the rows are moved around
+            List<Object> held = table.getRow(2);
+            table.sortByHeader("Name");
+            table.getRows().add(0, Arrays.asList("first", "0", "inserted"));
+            Assertions.assertEquals(Arrays.asList("gamma", "1", "two\nlines"), held);
+            Assertions.assertEquals(3, held.size());
+            held.set(2, "moved");
+            Assertions.assertEquals(Arrays.asList("gamma", "1", "moved"), table.getRow(4));
+            table.setRow(4, "gamma", "1", "two\nlines");
+            table.getRows().remove(0);
+
+            // the table can still be changed and sorted
+            table.sortByHeader("Count");
+            expected.sortByHeader("Count");
+            table.addRow("epsilon", 5, "added");
+            expected.addRow("epsilon", 5, "added");
+            table.setCell(0, 2, "changed");
+            expected.setCell(0, 2, "changed");
+            Assertions.assertEquals(expected.getRows(), table.getRows());
+            Assertions.assertEquals(expected.toString(), table.toString());
+
+            // a quote is only special at the start of a field, the same as in commons-csv
+            csv = "Size,Count,Note\n"
+                + "12\" pipe,3,say \"hi\"\n"
+                + "bolt,4,\"\"\"12\"\" pipe\"\"\"\n"
+                + "\"\",5, \"spaced\"\n"
+                + "nut\",6,\"a,\n\"\"b\"\"\"\r\n";
+            Files.write(path, csv.getBytes(StandardCharsets.UTF_8));
+            List<List<String>> records = new ArrayList<>();
+            for (CSVRecord record : CSVFormat.DEFAULT.parse(new StringReader(csv))) {
+                List<String> values = new ArrayList<>();
+                record.forEach(values::add);
+                records.add(values);
+            }
+            table = PrettyTable.fromCsv(path);
+            Assertions.assertEquals(records.get(0), table.getHeaders());
+            Assertions.assertEquals(records.subList(1, records.size()), table.getRows());
+            Assertions.assertEquals("12\" pipe", table.getCell(0, 0));
+        } finally {
+            Files.delete(path);
+        }
+    }
+
+    @Test
+    public void testWriteBytes() throws Exception {
+        PrettyTable table = new PrettyTable("Name", "Symbol");
+        table.addRow("plain", "abc");
+        table.addRow("accented", "caf\u00e9 \u20ac");
+        table.addRow("emoji", "\ud83d\ude00 smile");
+        table.addRow("broken", "\ud83d!");
+        for (int rIdx = 0; rIdx < 500; rIdx++) {
+            table.addRow("row" + rIdx, "value " + rIdx);
+        }
+        for (OutputFormat format : OutputFormat.values()) {
+            byte[] expected = table.formattedString(format).getBytes(StandardCharsets.UTF_8);
+            ByteArrayOutputStream stream = new ByteArrayOutputStream();
+            table.writeTo(Channels.newChannel(stream), format);
+            Assertions.assertArrayEquals(expected, stream.toByteArray());
+
+            ByteBuffer buffer = ByteBuffer.allocate(expected.length);
+            table.writeTo(buffer, format, true);
+            Assertions.assertArrayEquals(expected, buffer.array());
+            buffer.clear();
+            table.writeTo(buffer, format);
+            Assertions.assertArrayEquals(expected, buffer.array());
+        }
+        // the channel buffer is a heap buffer kept for the thread, which each write starts from empty
+        ByteBuffer kept = RenderBuffers.acquireBytes();
+        Assertions.assertFalse(kept.isDirect());
+        kept.put((byte) 'x');
+        RenderBuffers.recycleBytes(kept);
+        ByteArrayOutputStream again = new ByteArrayOutputStream();
+        table.writeTo(Channels.newChannel(again), OutputFormat.CSV);
+        Assertions.assertArrayEquals(table.formattedString(OutputFormat.CSV).getBytes(StandardCharsets.UTF_8),
+            again.toByteArray());
+        Assertions.assertSame(kept, RenderBuffers.acquireBytes());
+        RenderBuffers.recycleBytes(kept);
+        // a small buffer is written out to the channel as it fills up
+        ByteArrayOutputStream stream = new ByteArrayOutputStream();
+        Utf8Output output = new Utf8Output(ByteBuffer.allocate(16), Channels.newChannel(stream));
+        table.render(TableRenderers.get(OutputFormat.JSON), true, output);
+        output.flush();
+        Assertions.assertArrayEquals(table.formattedString(OutputFormat.JSON).getBytes(StandardCharsets.UTF_8),
+            stream.toByteArray());
+        // a StringBuilder is encoded as it is, surrogate pairs split across appends included
+        stream.reset();
+        output.append(new StringBuilder("caf\u00e9 \ud83d")).append(new StringBuilder("\ude00")).append(null);
+        output.flush();
+        Assertions.assertEquals("caf\u00e9 \ud83d\ude00null", new String(stream.toByteArray(), StandardCharsets.UTF_8));
+
+        Assertions.assertThrows(BufferOverflowException.class,
+            () -> table.writeTo(ByteBuffer.allocate(64), OutputFormat.CSV, true));
+    }
+
+    @Test
+    public void testDisplayWidth() throws Exception {
+        // double-width characters take two columns, and combining marks take none
+        PrettyTable table = new PrettyTable("Name", "\u540d\u524d");
+        table.setHorizAligns(HorizontalAlign.LEFT, HorizontalAlign.CENTER);
+        table.addRow("\u65e5\u672c\u8a9e", "cafe\u0301");
+        table.addRow("smile \ud83d\ude00", "x");
+        Assertions.assertEquals(Arrays.asList(8, 4), table.getMaxWidths());
+        String expected = ""
+            + "+----------+------+\n"
+            + "| Name     | \u540d\u524d |\n"
+            + "+----------+------+\n"
+            + "| \u65e5\u672c\u8a9e   | cafe\u0301 |\n"
+            + "| smile \ud83d\ude00 |  x   |\n"
+            + "+----------+------+\n";
+        Assertions.assertEquals(expected, table.formattedString(OutputFormat.TEXT));
+
+        // wide characters are never split when a streamed cell is truncated or wrapped
+        StringBuilder output = new StringBuilder();
+        StreamingPrettyTable streaming = new StreamingPrettyTable(output, "Text");
+        streaming.setColumnWidths(5);
+        streaming.setHorizAligns(HorizontalAlign.LEFT);
+        streaming.setOverflow(CellOverflow.WRAP);
+        streaming.addRow("\u65e5\u672c\u8a9e\u8868");
+        streaming.close();
+        Assertions.assertEquals(""
+            + "+-------+\n"
+            + "| Text  |\n"
+            + "+-------+\n"
+            + "| \u65e5\u672c  |\n"
+            + "| \u8a9e\u8868  |\n"
+            + "+-------+\n", output.toString());
+    }
+
+    @Test
+    public void testIncrementalRendering() {
+        PrettyTable table = new PrettyTable("Host", "State", "Load");
+        table.addRow("alpha", "up", 10);
+        table.addRow("beta", "up", 20);
+        table.addRow("gamma", "down", 30);
+        TableRenderInterface full = TableRenderers.get(OutputFormat.TEXT);
+        List<TextChange> changes = table.getTextChanges(false);
+        Assertions.assertEquals(1, changes.size());
+        Assertions.assertEquals(0, changes.get(0).getLine());
+        Assertions.assertEquals(0, changes.get(0).getRemovedLines());
+        Assertions.assertEquals(String.join("\n", changes.get(0).getLines()) + "\n", table.render(full, false));
+        Assertions.assertTrue(table.getTextChanges(false).isEmpty());
+
+        // only the changed row is rendered again, as long as the widths stay the same
+        table.setCell(1, 2, 21);
+        table.updateRow(0, "alpha", "up", 10);
+        changes = table.getTextChanges(false);
+        Assertions.assertEquals(1, changes.size());
+        Assertions.assertEquals(4, changes.get(0).getLine());
+        Assertions.assertEquals(1, changes.get(0).getRemovedLines());
+        Assertions.assertEquals(Arrays.asList("| beta  |  up   |  21  |"), changes.get(0).getLines());
+        Assertions.assertEquals(table.render(full, false), table.formattedString(OutputFormat.TEXT, false));
+
+        // a new row replaces the bottom rule, and a wider column changes everything
+        table.addRow("delta", "up", 40);
+        changes = table.getTextChanges(false);
+        Assertions.assertEquals("[@6 -1 +2]", changes.toString());
+        table.updateRow(3, "delta", "starting", 40);
+        Assertions.assertEquals("[@0 -8 +8]", table.getTextChanges(false).toString());
+        Assertions.assertEquals(table.render(full, false), table.formattedString(OutputFormat.TEXT, false));
+
+        // without redundant cells, the row below a change is rendered again too
+        PrettyTable grouped = new PrettyTable("Group", "Name");
+        grouped.addRow("a", "one");
+        grouped.addRow("a", "two");
+        grouped.setIncrementalRendering(true);
+        grouped.getTextChanges(true);
+        grouped.setCell(0, 0, "b");
+        Assertions.assertEquals("[@3 -1 +1, @4 -1 +1]", grouped.getTextChanges(true).toString());
+        Assertions.assertEquals(grouped.render(full, true), grouped.formattedString(OutputFormat.TEXT, true));
+        grouped.sortByHeader("Group");
+        Assertions.assertEquals(grouped.render(full, true), grouped.formattedString(OutputFormat.TEXT, true));
+    }
+
+    @Test
+    public void testRenderListeners() throws Exception {
+        PrettyTable nested = new PrettyTable("x", "y");
+        nested.addRow(1, 2);
+        PrettyTable table = new PrettyTable("Name", "Detail");
+        table.addRow("b", nested);
+        table.addRow("a", "none");
+        List<RenderStats> renders = new ArrayList<>();
+        List<Integer> sorts = new ArrayList<>();
+        RenderListener listener = new RenderListener() {
+            @Override
+            public void rendered(RenderStats stats) {
+                renders.add(stats);
+            }
+
+            @Override
+            public void sorted(PrettyTable sortedTable, int rowCount, long nanos) {
+                sorts.add(rowCount);
+            }
+        };
+        String expected;
+        RenderListeners.add(listener);
+        try {
+            table.setOutputCaching(true);
+            expected = table.formattedString(OutputFormat.TEXT);
+            Assertions.assertSame(expected, table.formattedString(OutputFormat.TEXT));
+            table.sortByHeader("Name");
+            table.writeTo(new StringWriter(), OutputFormat.CSV);
+        } finally {
+            RenderListeners.remove(listener);
+        }
+        Assertions.assertFalse(RenderListeners.isEnabled());
+        table.formattedString(OutputFormat.JSON);
+
+        // the nested table reports its own render, before the table around it
+        Assertions.assertEquals(4, renders.size());
+        Assertions.assertSame(nested, renders.get(0).getTable());
+        RenderStats first = renders.get(1);
+        Assertions.assertSame(table, first.getTable());
+        Assertions.assertEquals("TEXT", first.getFormat());
+        Assertions.assertEquals(2, first.getRowCount());
+        Assertions.assertEquals(2, first.getColumnCount());
+        Assertions.assertEquals(expected.length(), first.getOutputLength());
+        Assertions.assertFalse(first.isCacheHit());
+        Assertions.assertTrue(first.getNanos(RenderStats.Phase.NESTED) > 0);
+        long phases = 0;
+        for (RenderStats.Phase phase : RenderStats.Phase.values()) {
+            phases += first.getNanos(phase);
+        }
+        Assertions.assertEquals(first.getTotalNanos(), phases);
+        Assertions.assertTrue(renders.get(2).isCacheHit());
+        Assertions.assertEquals(Arrays.asList(2), sorts);
+        Assertions.assertEquals("CSV", renders.get(3).getFormat());
+        Assertions.assertEquals(table.formattedString(OutputFormat.CSV).length(), renders.get(3).getOutputLength());
+
+        // a renderer that fails is reported as failing, rather than as an empty render
+        TableRenderInterface failing = new TableRenderInterface() {
+            @Override
+            public String render(PrettyTable failed, boolean removeRedundant) {
+                return "";
+            }
+
+            @Override
+            public void render(PrettyTable failed, boolean removeRedundant, Appendable out) throws IOException {
+                throw new IOException("broken");
+            }
+        };
+        table.setMaxRows(1);
+        RenderListeners.add(listener);
+        try {
+            Assertions.assertThrows(UncheckedIOException.class, () -> table.render(failing, false));
+        } finally {
+            RenderListeners.remove(listener);
+        }
+        Assertions.assertEquals(5, renders.size());
+    }
+
+    @Test
+    public void testFlightRecording() throws Exception {
+        PrettyTable table = new PrettyTable("Name", "Count");
+        table.addRow("a", 1);
+        Path file = Files.createTempFile("prettytable", ".jfr");
+        try (Recording recording = new Recording()) {
+            recording.enable("rickwporter.prettytable.Render");
+            recording.start();
+            RenderListeners.setFlightRecording(true);
+            try {
+                table.formattedString(OutputFormat.HTML);
+            } finally {
+                RenderListeners.setFlightRecording(false);
+            }
+            recording.stop();
+            recording.dump(file);
+            List<RecordedEvent> events = RecordingFile.readAllEvents(file);
+            Assertions.assertEquals(1, events.size());
+            Assertions.assertEquals("HTML", events.get(0).getString("format"));
+            Assertions.assertEquals("Name,Count", events.get(0).getString("headers"));
+            Assertions.assertEquals(1, events.get(0).getInt("rows"));
+        } finally {
+            Files.delete(file);
+        }
+        Assertions.assertFalse(RenderListeners.isFlightRecording());
+    }
+
+    @Test
+    public void testOutputLimits() {
+        PrettyTable table = new PrettyTable("Name", "Note");
+        table.setHorizAligns(HorizontalAlign.LEFT, HorizontalAlign.LEFT);
+        table.addRow("a", "short");
+        table.addRow("b", StringUtils.repeat('x', 25));
+        table.addRow("c", "ok");
+        table.setMaxCellWidth(10);
+        Assertions.assertEquals(Arrays.asList(4, 10), table.getMaxWidths());
+        Assertions.assertEquals(10, PrettyTable.getTextWidth(StringUtils.repeat('x', 1_000_000), 10));
+        Assertions.assertTrue(table.formattedString(OutputFormat.TEXT).contains("| b    | xxxxxxx... |\n"));
+        // only the text output is cut to the cell width, so the other formats keep their values whole
+        Assertions.assertTrue(table.formattedString(OutputFormat.CSV).contains("b," + StringUtils.repeat('x', 25)));
+        table.setCellOverflow(CellOverflow.WRAP);
+        Assertions.assertTrue(table.formattedString(OutputFormat.TEXT).contains(""
+            + "| b    | xxxxxxxxxx |\n"
+            + "|      | xxxxxxxxxx |\n"
+            + "|      | xxxxx      |\n"));
+
+        // the widths are still those of the whole table, and the text output says how many rows were left out
+        table.setMaxRows(1);
+        Assertions.assertEquals(""
+            + "+------+------------+\n"
+            + "| Name | Note       |\n"
+            + "+------+------------+\n"
+            + "| a    | short      |\n"
+            + "+------+------------+\n"
+            + "... 2 more rows\n", table.formattedString(OutputFormat.TEXT));
+        Assertions.assertEquals("Name,Note\na,short\n", table.formattedString(OutputFormat.CSV));
+
+        // the output stops at the last whole line that leaves room for the marker
+        table.setMaxRows(0);
+        table.setMaxOutputLength(40);
+        Assertions.assertEquals("... output truncated at 40 chars\n", table.formattedString(OutputFormat.TEXT));
+        StringWriter writer = new StringWriter();
+        table.setMaxOutputLength(70);
+        Assertions.assertDoesNotThrow(() -> table.writeTo(writer, OutputFormat.TEXT));
+        Assertions.assertEquals(""
+            + "+------+------------+\n"
+            + "... output truncated at 70 chars\n", writer.toString());
+        for (int maxRows = 0; maxRows < 3; maxRows++) {
+            table.setMaxRows(maxRows);
+            table.setMaxOutputLength(0);
+            String full = table.formattedString(OutputFormat.TEXT);
+            for (int maxLength = 1; maxLength <= full.length(); maxLength++) {
+                table.setMaxOutputLength(maxLength);
+                String limited = table.formattedString(OutputFormat.TEXT);
+                Assertions.assertTrue(limited.length() <= maxLength, limited);
+                Assertions.assertEquals(maxLength == full.length(), limited.equals(full));
+            }
+        }
+        table.setMaxRows(0);
+
+        // the other formats end at the last whole row that fits, without a marker, so they can still be parsed
+        for (OutputFormat format : Arrays.asList(OutputFormat.JSON, OutputFormat.CSV, OutputFormat.HTML)) {
+            table.setMaxOutputLength(0);
+            String full = table.formattedString(format, false);
+            String twoRows = table.limit(2).formattedString(format, false);
+            table.setMaxOutputLength(full.length() - 1);
+            Assertions.assertEquals(twoRows, table.formattedString(format, false));
+            table.setMaxOutputLength(full.length());
+            Assertions.assertEquals(full, table.formattedString(format, false));
+            table.setMaxOutputLength(5);
+            Assertions.assertEquals("", table.formattedString(format, false));
+        }
+
+        // numbers and nested tables are never cut short, so the JSON output stays valid
+        PrettyTable nested = new PrettyTable("Id", "Description");
+        nested.addRow(1, "a long description");
+        nested.setOutputFormat(OutputFormat.JSON);
+        PrettyTable typed = new PrettyTable("N", "Total", "Nested");
+        typed.addRow(1234567890123L, new BigDecimal("12345.678901"), nested);
+        String json = typed.formattedString(OutputFormat.JSON, false);
+        typed.setMaxCellWidth(6);
+        Assertions.assertEquals(json, typed.formattedString(OutputFormat.JSON, false));
+        Assertions.assertTrue(json.contains("\"N\": 1234567890123,"));
+        Assertions.assertTrue(typed.formattedString(OutputFormat.TEXT).contains("| 123... |"));
+        Assertions.assertTrue(typed.formattedString(OutputFormat.TEXT).contains("\"Description\": \"a long description\""));
+    }
+
+    @Test
+    public void testRenderService() throws Exception {
+        List<PrettyTable> tables = new ArrayList<>();
+        List<String> expected = new ArrayList<>();
+        for (int tIdx = 0; tIdx < 40; tIdx++) {
+            PrettyTable table = new PrettyTable("Table", "Row");
+            for (int rIdx = 0; rIdx < tIdx * 10; rIdx++) {
+                table.addRow(tIdx, rIdx);
+            }
+            tables.add(table);
+            expected.add(table.formattedString(OutputFormat.JSON, false));
+        }
+        try (TableRenderService service = new TableRenderService(3)) {
+            // the outputs come back in the order of the tables
+            Assertions.assertEquals(expected, service.renderAll(tables, OutputFormat.JSON, false).get());
+            Assertions.assertEquals(tables.get(5).toString(), service.render(tables.get(5)).get());
+
+            // a render that fails fails the batch
+            List<PrettyTable> broken = new ArrayList<>(tables.subList(0, 3));
+            PrettyTable failing = new PrettyTable("Cell");
+            final boolean[] fail = new boolean[] {false};
+            failing.addRow(new Object() {
+                @Override
+                public String toString() {
+                    if (fail[0]) {
+                        throw new IllegalStateException("broken");
+                    }
+                    return "ok";
+                }
+            });
+            fail[0] = true;
+            broken.add(failing);
+            CompletableFuture<List<String>> failed = service.renderAll(broken, OutputFormat.TEXT, true);
+            Assertions.assertThrows(ExecutionException.class, failed::get);
+
+            // a render cancelled while it waits for a thread is skipped, and still gives up its place
+            ExecutorService single = Executors.newSingleThreadExecutor();
+            try (TableRenderService waiting = new TableRenderService(single, 2)) {
+                CountDownLatch release = new CountDownLatch(1);
+                single.execute(() -> Assertions.assertDoesNotThrow(() -> release.await()));
+                CompletableFuture<String> cancelled = waiting.render(tables.get(1));
+                Assertions.assertEquals(1, waiting.getInFlight());
+                Assertions.assertTrue(cancelled.cancel(true));
+                release.countDown();
+                Assertions.assertEquals(tables.get(2).toString(), waiting.render(tables.get(2)).get());
+                Assertions.assertEquals(0, waiting.getInFlight());
+            } finally {
+                single.shutdown();
+            }
+        }
+    }
+
+    @Test
+    public void testRenderBuffers() {
+        // a buffer given back is handed out again on the same thread, empty
+        StringBuilder buffer = RenderBuffers.acquire();
+        buffer.append("left over");
+        RenderBuffers.recycle(buffer);
+        StringBuilder reused = RenderBuffers.acquire();
+        Assertions.assertSame(buffer, reused);
+        Assertions.assertEquals(0, reused.length());
+        // a nested render takes a buffer of its own, while the outer one is still held
+        Assertions.assertNotSame(reused, RenderBuffers.acquire());
+        RenderBuffers.recycle(reused);
+
+        // one grown past the limit is not kept
+        StringBuilder huge = RenderBuffers.acquire();
+        huge.ensureCapacity(RenderBuffers.MAX_RETAINED + 1);
+        RenderBuffers.recycle(huge);
+        Assertions.assertNotSame(huge, RenderBuffers.acquire());
+
+        PrettyTable inner = new PrettyTable("Id", "Tag");
+        inner.addRow(1, "x\ny");
+        PrettyTable table = new PrettyTable("Name", "Inner");
+        table.setHorizAligns(HorizontalAlign.LEFT, HorizontalAlign.RIGHT);
+        table.addRow("alpha", inner);
+        table.addRow("alpha", "multi\nline");
+        table.addRow("beta", "");
+        String expected = String.join("\n",
+            "+-------+--------------+",
+            "| Name  |        Inner |",
+            "+-------+--------------+",
+            "| alpha | +----+-----+ |",
+            "|       | | Id | Tag | |",
+            "|       | +----+-----+ |",
+            "|       | | 1  |  x  | |",
+            "|       | |    |  y  | |",
+            "|       | +----+-----+ |",
+            "|       |        multi |",
+            "|       |         line |",
+            "| beta  |              |",
+            "+-------+--------------+",
+            "");
+        // the rows are written through the same arrays, and the output buffer is reused between renders
+        String first = table.formattedString(OutputFormat.TEXT);
+        Assertions.assertEquals(expected, first);
+        Assertions.assertEquals(first, table.formattedString(OutputFormat.TEXT));
+        Assertions.assertEquals(table.formattedString(OutputFormat.HTML), table.formattedString(OutputFormat.HTML));
+    }
+
+    @Test
+    public void testTextLayout() throws Exception {
+        TextLayout layout = new TextLayout(new int[] {4, 3, 5},
+            Arrays.asList(HorizontalAlign.LEFT, HorizontalAlign.RIGHT, HorizontalAlign.CENTER));
+        StringBuilder out = new StringBuilder();
+        layout.rule(out);
+        String[][] splits = new String[][] {{"ab", "abcd"}, {"x"}, {"\u540d\u524d"}};
+        layout.row(out, splits, 3);
+        // a row with fewer cells than columns stops at its last cell
+        layout.row(out, new String[][] {{""}}, 1);
+        Assertions.assertEquals(String.join("\n",
+            "+------+-----+-------+",
+            "| ab   |   x | \u540d\u524d  |",
+            "| abcd |     |       |",
+            "|      |",
+            ""), out.toString());
+        Assertions.assertEquals("+------+-----+-------+".length() + 1, layout.getLineLength());
+
+        // kept between renders until a width or an alignment changes
+        PrettyTable table = new PrettyTable("Name", "Count");
+        table.addRow("apple", 3);
+        String first = table.formattedString(OutputFormat.TEXT, true);
+        RenderPlan plan = table.prepare();
+        TextLayout compiled = table.getTextLayout(plan.getWidths(), plan.getHorizAligns());
+        Assertions.assertEquals(first, table.formattedString(OutputFormat.TEXT, true));
+        Assertions.assertSame(compiled, table.getTextLayout(plan.getWidths(), plan.getHorizAligns()));
+
+        table.setHorizAligns(HorizontalAlign.LEFT, HorizontalAlign.RIGHT);
+        Assertions.assertEquals(String.join("\n",
+            "+-------+-------+",
+            "| Name  | Count |",
+            "+-------+-------+",
+            "| apple |     3 |",
+            "+-------+-------+",
+            ""), table.formattedString(OutputFormat.TEXT, true));
+        plan = table.prepare();
+        Assertions.assertNotSame(compiled, table.getTextLayout(plan.getWidths(), plan.getHorizAligns()));
+        compiled = table.getTextLayout(plan.getWidths(), plan.getHorizAligns());
+
+        table.addRow("pineapple", 12);
+        Assertions.assertEquals(String.join("\n",
+            "+-----------+-------+",
+            "| Name      | Count |",
+            "+-----------+-------+",
+            "| apple     |     3 |",
+            "| pineapple |    12 |",
+            "+-----------+-------+",
+            ""), table.formattedString(OutputFormat.TEXT, true));
+        plan = table.prepare();
+        Assertions.assertNotSame(compiled, table.getTextLayout(plan.getWidths(), plan.getHorizAligns()));
+    }
 }